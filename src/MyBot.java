@@ -1,8 +1,8 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -11,13 +11,25 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.retardants.Log;
+import org.retardants.TurnBudget;
 import org.retardants.adt.Aim;
 import org.retardants.adt.Ants;
 import org.retardants.adt.Bot;
+import org.retardants.adt.Ilk;
+import org.retardants.adt.MoveResolver;
 import org.retardants.adt.Route;
+import org.retardants.adt.Stencil;
 import org.retardants.adt.Strategy;
 import org.retardants.adt.Tile;
+import org.retardants.adt.Vision;
+import org.retardants.combat.BattleSearch;
+import org.retardants.combat.CombatSimulator;
+import org.retardants.combat.ThreatMap;
 import org.retardants.diffusion.DiffusionMap;
+import org.retardants.food.FoodAssignment;
+import org.retardants.food.FoodClaims;
+import org.retardants.path.DistanceField;
 import org.retardants.path.PathMap;
 import org.retardants.path.TilePath;
 
@@ -34,22 +46,75 @@ public class MyBot extends Bot {
      * @throws java.io.IOException if an I/O error occurs
      */
     public static void main(String[] args) throws IOException {
-        new MyBot().readSystemInput();
+        MyBot bot = new MyBot();
+        bot.readSystemInput();
+        if (bot.getBudget() != null && Log.isInfo(Log.Subsystem.BOT)) {
+            Log.info(Log.Subsystem.BOT, bot.getBudget().toString());
+        }
     }
 
-    // Key: location to move to.
-    // Value: location of ant moving to its key.
-    private Map<Tile, Tile> allOrders = new HashMap<Tile, Tile>();
     private Map<Tile, Integer> visitedTiles;
     private Set<Tile> unseenTiles;
-    private Set<Tile> enemyHills = new HashSet<Tile>();
+    // Unseen tiles next to a seen one: the sources of the unexplored channel.
+    private Set<Tile> unseenFrontier = new HashSet<Tile>();
+
+    // Order-less ants and all food of the turn, as tiles and flat indices,
+    // filled by collectFoodAndAnts().
+    private Tile[] freeAnts;
+    private int[] freeAntCells;
+    private int freeAntCount;
+    private Tile[] foodTiles;
+    private int[] foodCells;
     
-    private Strategy battleStrategy = Strategy.BATTLE_DIJKSTRAS_TILE_PATH;
-    private Strategy foodStrategy = Strategy.FOOD_DIFFUSION_ONE_ANT_PER_FOOD;
-    private Strategy explorationStrategy = Strategy.EXPLORATION_LEAST_VISITED;
-    private int turn = 0;
+    private Strategy battleStrategy = Strategy.BATTLE_DISTANCE_FIELD;
+    private Strategy foodStrategy = Strategy.FOOD_ASSIGNMENT;
+    Strategy explorationStrategy = Strategy.EXPLORATION_LEAST_VISITED;
 
     DiffusionMap diffusionMap;
+    int unexploredChannel;
+    DistanceField hillDistances;
+    FoodAssignment foodAssignment;
+    FoodClaims foodClaims;
+    CombatSimulator combat;
+    ThreatMap threats;
+    BattleSearch battleSearch;
+
+    // Locations near enough to a move to take part in its battle, and room
+    // for the ants found there: allocated once, reused by every battleOutcome.
+    Stencil battleRange;
+    private int[] rangeCells;
+    private int[] rangeMine;
+    private int[] rangeEnemies;
+    MoveResolver moves;
+
+    // Ants farther than this many steps from a food are not sent to it.
+    private static final int MAX_FOOD_DISTANCE = 30;
+
+    // Every phase proposes each legal move of the ants it takes, scored on
+    // one scale, and moves settles their conflicts by score, whichever phase
+    // proposed them. A target worth v scores v - STEP_VALUE * s for a move
+    // that leaves it s steps away, so a step nearer always scores higher,
+    // however far the target; a scent scores its worth at a source, and a
+    // tenth of that less every time it halves; and a move into a battle
+    // gains ANT_VALUE for every enemy it kills, and loses it for every ant
+    // of mine.
+    private static final int ANT_VALUE = 1000;
+    private static final int FOOD_VALUE = 1000;
+    private static final int HILL_VALUE = 5000;
+    private static final int EXPLORE_VALUE = 100;
+    private static final int STEP_VALUE = 10;
+    // The move chosen by the battle search, which saw the enemy replies,
+    // outweighs those it did not choose.
+    private static final int SEARCH_BONUS = 2 * ANT_VALUE;
+    // More halvings than a positive double has.
+    private static final double MAX_SCENT_HALVINGS = 1100;
+
+    // Scent emitted by every unseen tile of the frontier. Its decay fades it
+    // to about 0.8 of itself a step (decay length sqrt(D / decay) = 5 steps),
+    // so that it still points to the nearest frontier from inside a ring of
+    // them, and the strength keeps it far above the solver's tolerance.
+    private static final double UNEXPLORED_STRENGTH = 1000.0;
+    private static final double UNEXPLORED_DECAY = 0.01;
 
 
     @Override
@@ -77,45 +142,130 @@ public class MyBot extends Bot {
         if (ants == null)
             throw new RuntimeException("Null value for ants");
 
-        diffusionMap = new DiffusionMap(ants.getCols(), ants.getRows(), ants);
+        // Unseen tiles attract exploring ants; the decay keeps the pull local.
+        diffusionMap = new DiffusionMap(ants.getCols(), ants.getRows(), ants,
+                new DiffusionMap.Channel("food", DiffusionMap.DEFAULT_FOOD_COST, 0.0,
+                        DiffusionMap.DEFAULT_DIFF_VALUE, true),
+                new DiffusionMap.Channel("unexplored", UNEXPLORED_STRENGTH, UNEXPLORED_DECAY,
+                        DiffusionMap.DEFAULT_DIFF_VALUE, false));
+        unexploredChannel = diffusionMap.getChannel("unexplored");
+        diffusionMap.setIncremental(true);
+        diffusionMap.setSolver(DiffusionMap.Solver.COARSE_TO_FINE);
+        diffusionMap.setParallelism(Runtime.getRuntime().availableProcessors());
+        hillDistances = new DistanceField(ants);
+        foodAssignment = new FoodAssignment(ants, MAX_FOOD_DISTANCE);
+        foodClaims = new FoodClaims(ants, MAX_FOOD_DISTANCE);
+        combat = new CombatSimulator(ants.getRows(), ants.getCols(), ants.getAttackRadius2());
+        threats = new ThreatMap(ants.getRows(), ants.getCols(), ants.getAttackRadius2());
+        int reach = (int)Math.sqrt(ants.getAttackRadius2()) + 2;
+        battleRange = new Stencil(ants.getRows(), ants.getCols(), reach * reach);
+        rangeCells = new int[battleRange.size()];
+        rangeMine = new int[battleRange.size() + 1];
+        rangeEnemies = new int[battleRange.size()];
+        battleSearch = new BattleSearch(ants, Runtime.getRuntime().availableProcessors());
+        moves = new MoveResolver(ants);
     }
 
     /**
-     * Attempts to move an ant in the given direction. Fails iff
-     * the Tile is occupied or if we've already issued an order for
-     * another ant to occupy the destination tile in this turn.
-     * TODO(ipince): revise definition of isOccupied()
+     * Proposes that the ant at antLoc moves in the given direction, or stays
+     * if it is null, scoring score plus the outcome of the battle at the
+     * destination. Fails iff the destination holds water, food or an enemy
+     * ant. Conflicts with other proposals, including ants of mine standing
+     * still at the destination, are settled at the end of the turn.
      */
-    private boolean doMoveDirection(Tile antLoc, Aim direction) {
-
+    private boolean proposeMove(Tile antLoc, Aim direction, int score) {
         Ants ants = getAnts();
-        Tile newLoc = ants.getTile(antLoc, direction);
-
-        if (ants.getIlk(newLoc).isUnoccupied()
-                && ! allOrders.containsKey(newLoc)) {
-            ants.issueOrder(antLoc, direction);
-            allOrders.put(newLoc, antLoc);
-            System.err.print("\tAnt at " + antLoc + " moving " + direction);
+        Tile dest = direction == null ? antLoc : ants.getTile(antLoc, direction);
+        score += ANT_VALUE * battleOutcome(antLoc, dest);
+        if (moves.propose(ants.index(antLoc), direction, score)) {
+            if (Log.isTrace(Log.Subsystem.BOT)) {
+                Log.trace(Log.Subsystem.BOT, "Ant at " + antLoc + " may move " + direction
+                        + " for " + score);
+            }
             return true;
         } else {
             return false;
         }
     }
 
-    private boolean doMoveLocation(Tile antLoc, Tile destLoc) {
-        Ants ants = getAnts();
-        List<Aim> directions =
-            new ArrayList<Aim>(ants.getDirections(antLoc, destLoc));
+    /*
+     * The four directions in random order: equal scores go to the move
+     * proposed first, so this breaks ties between moves at random. Staying
+     * is proposed after them, and loses its ties.
+     */
+    private static List<Aim> shuffledAims() {
+        List<Aim> directions = new ArrayList<Aim>(Arrays.asList(Aim.values()));
         Collections.shuffle(directions);
-        for (Aim direction : directions) { 
-            if (doMoveDirection(antLoc, direction))
-                return true;
+        return directions;
+    }
+
+    /**
+     * Proposes every move of the ant at antLoc, staying included, scored by
+     * how near it leaves the ant to a target worth value: stepsLeft - 1
+     * steps away after a move along one of steps, stepsLeft after staying,
+     * and stepsLeft + 1 after any other move.
+     */
+    private void proposeTowards(Tile antLoc, Collection<Aim> steps, int stepsLeft, int value) {
+        for (Aim direction : shuffledAims()) {
+            int left = steps.contains(direction) ? Math.max(0, stepsLeft - 1) : stepsLeft + 1;
+            proposeMove(antLoc, direction, value - STEP_VALUE * left);
         }
-        return false;
+        proposeMove(antLoc, null, value - STEP_VALUE * stepsLeft);
     }
-    
-    private void printTime(String msg) {
-        System.err.println("Remaining after " + msg + ": " + getAnts().getTimeRemaining());
+
+    /**
+     * Proposes every move of the ant at antLoc, staying included, scored by
+     * the scent of channel at its destination, see scentScore().
+     *
+     * @return false, proposing nothing, if the ant smells no scent at all
+     */
+    private boolean proposeScents(Tile antLoc, int channel, double strength, int worth) {
+        Ants ants = getAnts();
+        boolean smelled = diffusionMap.getValue(antLoc, channel) > 0;
+        for (Aim direction : Aim.values()) {
+            smelled |= diffusionMap.getValue(ants.getTile(antLoc, direction), channel) > 0;
+        }
+        if (! smelled) {
+            return false;
+        }
+        for (Aim direction : shuffledAims()) {
+            double scent = diffusionMap.getValue(ants.getTile(antLoc, direction), channel);
+            proposeMove(antLoc, direction, scentScore(scent, strength, worth));
+        }
+        proposeMove(antLoc, null, scentScore(diffusionMap.getValue(antLoc, channel), strength, worth));
+        return true;
+    }
+
+    /*
+     * Score of a scent, out of the strength of its sources: worth at a
+     * source, and a tenth of worth less every time the scent halves, down
+     * to no scent at all. Scents fade about exponentially with distance, so
+     * this is about linear in the distance to the sources, however far.
+     */
+    private static int scentScore(double scent, double strength, int worth) {
+        double halvings = scent > 0
+                ? Math.min(MAX_SCENT_HALVINGS, Math.log(strength / scent) / Math.log(2))
+                : MAX_SCENT_HALVINGS;
+        return (int)Math.round(worth - worth * halvings / 10);
+    }
+
+    /**
+     * @return whether an earlier phase already proposed the moves of the ant
+     *         at antLoc this turn
+     */
+    private boolean isClaimed(Tile antLoc) {
+        return moves.hasIntents(getAnts().index(antLoc));
+    }
+
+    /*
+     * Steps from t1 to t2 around the map, ignoring water.
+     */
+    private int getSteps(Tile t1, Tile t2) {
+        Ants ants = getAnts();
+        int rowDelta = Math.abs(t1.getRow() - t2.getRow());
+        int colDelta = Math.abs(t1.getCol() - t2.getCol());
+        return Math.min(rowDelta, ants.getRows() - rowDelta)
+            + Math.min(colDelta, ants.getCols() - colDelta);
     }
     
     /**
@@ -124,58 +274,91 @@ public class MyBot extends Bot {
      */
     @Override
     public void doTurn() {
-        System.err.println("=====  TURN " + ++turn + " =====");
-        printTime("nothing");
-
         Ants ants = getAnts();
+        if (Log.isInfo(Log.Subsystem.BOT)) {
+            Log.info(Log.Subsystem.BOT, "=====  TURN " + ants.getTurn() + " =====");
+        }
         Set<Tile> sortedAnts = new TreeSet<Tile>(ants.getMyAnts());
-        allOrders.clear(); 
+        moves.clear();
 
         // Initialize unseen tiles set.
         if (unseenTiles == null) {
             unseenTiles = new HashSet<Tile>();
             for (int row = 0; row < ants.getRows(); row++)
                 for (int col = 0; col < ants.getCols(); col++)
-                    unseenTiles.add(new Tile(row, col));
+                    unseenTiles.add(ants.tileAt(row, col));
         }
-        printTime("unseen");
 
-        // Remove tiles that we're seeing this turn.
-        for (Iterator<Tile> iter = unseenTiles.iterator(); iter.hasNext();) {
-            Tile next = iter.next();
-            if (ants.isVisible(next)) {
-                iter.remove();
-            }	
+        // Remove tiles that we're seeing for the first time this turn; the
+        // rest of the visible ones were removed on an earlier turn. Only
+        // around those does the frontier of unseen tiles change.
+        Vision vision = ants.getVision();
+        int[] gained = vision.getGained();
+        boolean frontierChanged = false;
+        for (int i = 0; i < vision.getGainedCount(); i++) {
+            Tile seen = ants.tileAt(gained[i]);
+            if (unseenTiles.remove(seen)) {
+                frontierChanged = true;
+                unseenFrontier.remove(seen);
+                for (Aim aim : Aim.values()) {
+                    Tile next = ants.getTile(seen, aim);
+                    if (unseenTiles.contains(next)) {
+                        unseenFrontier.add(next);
+                    }
+                }
+            }
         }
-        printTime("seen");
         
         // Initialize visited tile map.
         if (visitedTiles == null) {
             visitedTiles = new HashMap<Tile, Integer>();
             for (int row = 0; row < ants.getRows(); row++) {
                 for (int col = 0; col < ants.getCols(); col++) {
-                    visitedTiles.put(new Tile(row, col), 0);
+                    visitedTiles.put(ants.tileAt(row, col), 0);
                 }
             }
         }
-        printTime("visited");
 
-        // Update visited tile map and enemy hills set.
+        // Update visited tile map.
         for (Tile antLoc : sortedAnts) {
             visitedTiles.put(antLoc, visitedTiles.get(antLoc) + 1);
         }
 
+        // Count the enemies that could attack each tile next turn.
+        int[] enemyCells = new int[ants.getEnemyAnts().size()];
+        int enemyCount = 0;
+        for (Tile enemy : ants.getEnemyAnts()) {
+            enemyCells[enemyCount++] = ants.index(enemy);
+        }
+        threats.update(enemyCells, enemyCount);
+
         // Don't step on own hill.
         for (Tile myHill : ants.getMyHills()) {
-            allOrders.put(myHill, null);
+            moves.reserve(ants.index(myHill));
         }
 
+        // === DIFFUSION ===
+
+        // One pass diffuses every channel; strategies below only read it.
+        // It has a phase of its own, so that a slow pass leaves the food
+        // phase its whole share.
+        TurnBudget budget = getBudget();
+        budget.beginPhase(TurnBudget.Phase.DIFFUSION);
+        Set<Tile> candies = ants.getFoodTiles();
+        if (frontierChanged) {
+            diffusionMap.setSources(unexploredChannel, unseenFrontier);
+        }
+        diffusionMap.timeStep(100, candies, budget.getPhaseRemaining());
+
         // === FOOD ===
 
+        budget.beginPhase(TurnBudget.Phase.FOOD);
+
         // TODO(ipince): fix timings. We should probably calculate TilePaths first, but issue
         // orders later.
-        Set<Tile> candies = ants.getFoodTiles();
-        System.err.println("FOOD (" + candies.size() + " candies)");
+        if (Log.isInfo(Log.Subsystem.FOOD)) {
+            Log.info(Log.Subsystem.FOOD, "FOOD (" + candies.size() + " candies)");
+        }
         switch (foodStrategy) {
         case FOOD_DIFFUSION_ALL_ANTS:
             foodDiffusionAllAnts(sortedAnts);
@@ -186,13 +369,26 @@ public class MyBot extends Bot {
         case FOOD_SHORTEST_EUCLIDEAN_ROUTE:
             foodShortestEuclideanRoute(sortedAnts);
             break;
+        case FOOD_ASSIGNMENT:
+            foodAssignment(sortedAnts);
+            break;
+        case FOOD_SIMULTANEOUS_BFS:
+            foodSimultaneousBfs(sortedAnts);
+            break;
         }
-        printTime("food");
 
         // === BATTLE ===
 
-        System.err.println("BATTLE (" + ants.getEnemyHills().size() + " known hills)");
+        budget.beginPhase(TurnBudget.Phase.BATTLE);
+
+        if (Log.isInfo(Log.Subsystem.BATTLE)) {
+            Log.info(Log.Subsystem.BATTLE, "BATTLE (" + ants.getEnemyHills().size() + " known hills)");
+        }
+        searchBattles(sortedAnts, enemyCells, enemyCount);
         switch (battleStrategy) {
+        case BATTLE_DISTANCE_FIELD:
+            battleDistanceField(sortedAnts);
+            break;
         case BATTLE_DIJKSTRAS_TILE_PATH:
             battleDijkstrasTilePath(sortedAnts);
             break;
@@ -200,11 +396,12 @@ public class MyBot extends Bot {
             battleShortestEuclideanRoute(sortedAnts);
             break;
         }
-        printTime("battle");
 
         // === EXPLORATION ===
 
-        System.err.println("EXPLORATION");
+        budget.beginPhase(TurnBudget.Phase.EXPLORATION);
+
+        Log.info(Log.Subsystem.EXPLORATION, "EXPLORATION");
         switch (explorationStrategy) {
         case EXPLORATION_LEAST_VISITED:
             exploreLeastVisited(sortedAnts);
@@ -212,40 +409,121 @@ public class MyBot extends Bot {
         case EXPLORATION_NEAREST_UNSEEN:
             exploreNearestUnseen(sortedAnts);
             break;
+        case EXPLORATION_DIFFUSION:
+            exploreDiffusion(sortedAnts);
+            break;
         }
-        printTime("exploration");
 
         // Move ants off our hills in a random direction.
-        System.err.println("ANTS OFF HILL");
+        budget.beginPhase(TurnBudget.Phase.OUTPUT);
+        Log.info(Log.Subsystem.BOT, "ANTS OFF HILL");
         for (Tile myHill : getAnts().getMyHills()) {
             if (sortedAnts.contains(myHill) 
-                    && ! allOrders.containsValue(myHill)) {
-                List<Aim> directions =
-                    new ArrayList<Aim>(Arrays.asList(Aim.values()));
-                Collections.shuffle(directions);
-                for (Aim direction : directions) {
-                    if (doMoveDirection(myHill, direction)) {
-                        System.err.println();
-                        break;
-                    }
+                    && ! isClaimed(myHill)) {
+                for (Aim direction : shuffledAims()) {
+                    proposeMove(myHill, direction, 0);
                 }
             }
         }
+
+        // Settle the intents of every phase, and send the orders.
+        int moving = moves.resolve();
+        moves.issueOrders();
+        if (Log.isDebug(Log.Subsystem.BOT)) {
+            Log.debug(Log.Subsystem.BOT, moving + " ants moving, of " + moves.size() + " intents");
+        }
+    }
+    
+    /**
+     * Moves the ants in battles where some ant could die, as searched by
+     * battleSearch in half of the battle time. Ants claimed by an earlier
+     * phase take part at the destinations settled for them so far, and keep
+     * their intents.
+     */
+    private void searchBattles(Set<Tile> sortedAnts, int[] enemyCells, int enemyCount) {
+        if (enemyCount == 0) {
+            return;
+        }
+        Ants ants = getAnts();
+        moves.resolve();
+        Tile[] myAnts = sortedAnts.toArray(new Tile[sortedAnts.size()]);
+        int[] myCells = new int[myAnts.length];
+        boolean[] fixed = new boolean[myAnts.length];
+        for (int i = 0; i < myAnts.length; i++) {
+            int antCell = ants.index(myAnts[i]);
+            fixed[i] = moves.hasIntents(antCell);
+            myCells[i] = moves.getDestination(antCell);
+        }
+
+        long now = System.nanoTime();
+        long deadline = now + Math.max(0, getBudget().getDeadline() - now) / 2;
+        int battles = battleSearch.search(myCells, fixed, myAnts.length,
+                enemyCells, enemyCount, deadline);
+        if (Log.isDebug(Log.Subsystem.BATTLE)) {
+            Log.debug(Log.Subsystem.BATTLE, battles + " battles searched");
+        }
+        for (int i = 0; i < myAnts.length; i++) {
+            if (fixed[i] || ! battleSearch.isEngaged(i)) {
+                continue;
+            }
+            // The searched move first, then the rest by their battle at
+            // the destination; either way the ant is out of reach of other
+            // strategies.
+            Tile antLoc = myAnts[i];
+            Aim searched = battleSearch.getDirection(i);
+            for (Aim direction : shuffledAims()) {
+                proposeMove(antLoc, direction, direction == searched ? SEARCH_BONUS : 0);
+            }
+            proposeMove(antLoc, null, searched == null ? SEARCH_BONUS : 0);
+        }
+    }
+
+    private void battleDistanceField(Set<Tile> sortedAnts) {
+        Set<Tile> hills = getAnts().getEnemyHills();
+        if (hills.isEmpty()) {
+            return;
+        }
+        // One sweep from all enemy hills gives every ant its nearest hill.
+        PathMap.findDistances(hillDistances, hills, Integer.MAX_VALUE);
         
-        printTime("turn is done");
+        // Score every move of each ant by the steps it leaves to the
+        // nearest hill, read off the field at its destination.
+        Ants ants = getAnts();
+        for (Tile antLoc : sortedAnts) {
+            if (! isClaimed(antLoc) && hillDistances.isReached(antLoc)) {
+                for (Aim direction : shuffledAims()) {
+                    Tile next = ants.getTile(antLoc, direction);
+                    if (hillDistances.isReached(next)) {
+                        proposeMove(antLoc, direction,
+                                HILL_VALUE - STEP_VALUE * hillDistances.getDistance(next));
+                    }
+                }
+                proposeMove(antLoc, null, HILL_VALUE - STEP_VALUE * hillDistances.getDistance(antLoc));
+                if (Log.isDebug(Log.Subsystem.BATTLE)) {
+                    Log.debug(Log.Subsystem.BATTLE, "Ant at " + antLoc + " killing HILL at "
+                            + hillDistances.getSource(antLoc) + "; "
+                            + hillDistances.getDistance(antLoc) + " steps away");
+                }
+            }
+        }
     }
     
     private void battleDijkstrasTilePath(Set<Tile> sortedAnts) {
         Map<Tile, Set<TilePath>> paths = null;
+        int hillsLeft = getAnts().getEnemyHills().size();
         for (Tile hillLoc : getAnts().getEnemyHills()) {
             // For each enemy hill, find the shortest tile-path to each ant.
-            // Use at most 50% of the time.
-            paths = PathMap.findBestPaths(getAnts(), hillLoc, sortedAnts, getAnts().getTimeRemaining()/2);
+            // Split what is left of the battle time between the hills left.
+            paths = PathMap.findBestPaths(getAnts(), hillLoc, sortedAnts,
+                    getBudget().getPhaseRemaining() / hillsLeft--);
             
-            // Send each ant to the hill using (one of) the shortest path found.
+            // Send each ant to the hill along the shortest paths found: their
+            // first steps are the moves that bring it closer.
             for (Tile antLoc : sortedAnts) {
-                if (! allOrders.containsValue(antLoc)) {
+                if (! isClaimed(antLoc)) {
                     if (paths.containsKey(antLoc)) {
+                        Set<Aim> steps = new HashSet<Aim>();
+                        int stepsLeft = 0;
                         for (TilePath path : paths.get(antLoc)) {
                             // Print the path
 //                            Iterator<Tile> printIter = path.reverseIterator();
@@ -257,11 +535,15 @@ public class MyBot extends Bot {
                             Iterator<Tile> iter = path.reverseIterator();
                             assert iter.hasNext(); iter.next();
                             assert iter.hasNext();
-                            if (doMoveLocation(antLoc, iter.next())) {
-                                System.err.println("; killing HILL at " + path.start() +
-                                        "; " + (path.cost()-1) + " steps away");
-                                break; // from Set iteration
-                            }
+                            Tile next = iter.next();
+                            steps.addAll(getAnts().getDirections(antLoc, next));
+                            stepsLeft = (int)path.cost() - 1;
+                        }
+                        proposeTowards(antLoc, steps, stepsLeft, HILL_VALUE);
+                        if (Log.isDebug(Log.Subsystem.BATTLE)) {
+                            Log.debug(Log.Subsystem.BATTLE, "Ant at " + antLoc
+                                    + " killing HILL at " + hillLoc +
+                                    "; " + stepsLeft + " steps away");
                         }
                     }
                 }
@@ -269,12 +551,53 @@ public class MyBot extends Bot {
         }
     }
     
+    /**
+     * Checks what moving the ant at antLoc to dest is worth in battle: the
+     * battle around dest, with the enemies where they stand and my other ants
+     * where they stand, kills some of them and some of us.
+     *
+     * @return the number of enemies killed less the number of my ants lost,
+     *         0 if no enemy can reach dest
+     */
+    private int battleOutcome(Tile antLoc, Tile dest) {
+        Ants ants = getAnts();
+        int destCell = ants.index(dest);
+        if (! threats.isThreatened(destCell)) {
+            return 0;
+        }
+        int antCell = ants.index(antLoc);
+        long[] mine = ants.getLayer(Ilk.MY_ANT);
+        long[] enemies = ants.getLayer(Ilk.ENEMY_ANT);
+        int count = battleRange.around(destCell, rangeCells);
+        int enemyCount = 0;
+        int myCount = 0;
+        rangeMine[myCount++] = destCell;
+        for (int k = 0; k < count; k++) {
+            int cell = rangeCells[k];
+            long bit = 1L << cell;
+            if ((enemies[cell >>> 6] & bit) != 0) {
+                rangeEnemies[enemyCount++] = cell;
+            } else if ((mine[cell >>> 6] & bit) != 0 && cell != antCell && cell != destCell) {
+                rangeMine[myCount++] = cell;
+            }
+        }
+        if (enemyCount == 0) {
+            return 0;
+        }
+        combat.fight(rangeMine, myCount, rangeEnemies, enemyCount);
+        if (combat.isDead(0) && Log.isDebug(Log.Subsystem.BATTLE)) {
+            Log.debug(Log.Subsystem.BATTLE, "Ant at " + antLoc + " would die at " + dest
+                    + ", killing " + combat.getEnemyDead() + " for " + combat.getMyDead());
+        }
+        return combat.getEnemyDead() - combat.getMyDead();
+    }
+    
     private void battleShortestEuclideanRoute(Set<Tile> sortedAnts) {
         // Build routes between every enemy hill and every ant.
         List<Route> hillRoutes = new ArrayList<Route>();
         for (Tile hillLoc : getAnts().getEnemyHills()) { 
             for (Tile antLoc : sortedAnts) { 
-                if (! allOrders.containsValue(antLoc)) {
+                if (! isClaimed(antLoc)) {
                     int distance = getAnts().getDistance(antLoc, hillLoc);
                     Route route = new Route(antLoc, hillLoc, distance);
                     hillRoutes.add(route);
@@ -285,39 +608,30 @@ public class MyBot extends Bot {
         // Assign all ants to go to the enemy hill, starting with min routes first.
         Collections.sort(hillRoutes);
         for (Route route : hillRoutes) {
-            if (doMoveLocation(route.getStart(), route.getEnd())) {
-                System.err.println("; killing HILL at " + route.getEnd());
+            if (! isClaimed(route.getStart())) {
+                proposeTowards(route.getStart(),
+                        getAnts().getDirections(route.getStart(), route.getEnd()),
+                        getSteps(route.getStart(), route.getEnd()), HILL_VALUE);
+                if (Log.isDebug(Log.Subsystem.BATTLE)) {
+                    Log.debug(Log.Subsystem.BATTLE, "Ant at " + route.getStart()
+                            + " killing HILL at " + route.getEnd());
+                }
             }
         }
     }
     
     // JOSE: THIS IS YOUR ORIGINAL IMPLEMENTATION (minor details changed)
     private void foodDiffusionAllAnts(Set<Tile> sortedAnts) {
-        Ants ants = getAnts();
-        Set<Tile> candies = ants.getFoodTiles();
-        // Use at most 50% of the turn time.
-        diffusionMap.timeStep(100, candies, ants.getTimeRemaining()/2);
-        
-        // For each ant, move in the direction of increasing diffusion value
+        // For each ant, propose every move, uphill ones first
         for (Tile antLoc : sortedAnts) {
-            // No need to calculate value for ants who already have orders.
-            if (! allOrders.containsValue(antLoc)) {
-                Double bestValue = Double.MIN_VALUE;
-                Aim bestAim  = null;
-
-                for (Aim aim : Aim.values()) {
-                    Tile neighbor = ants.getTile(antLoc, aim);
-                    Double neighborValue = diffusionMap.getValue(neighbor);
-                    if (neighborValue > bestValue) {
-                        bestValue = neighborValue;
-                        bestAim = aim;
-                    }
-                }
-
-                if (bestAim != null) {
-                    if (doMoveDirection(antLoc, bestAim)) {
-                        System.err.println("; moving uphill to value " + bestValue);
-                    }
+            // No need to calculate value for ants who already have orders;
+            // those that smell no food are left to later phases.
+            if (! isClaimed(antLoc)
+                    && proposeScents(antLoc, DiffusionMap.FOOD, DiffusionMap.DEFAULT_FOOD_COST,
+                            FOOD_VALUE)) {
+                if (Log.isDebug(Log.Subsystem.FOOD)) {
+                    Log.debug(Log.Subsystem.FOOD, "Ant at " + antLoc + " moving uphill from value "
+                            + diffusionMap.getValue(antLoc));
                 }
             }
         }
@@ -329,15 +643,13 @@ public class MyBot extends Bot {
         // when there are no enemy hills visible.
         Ants ants = getAnts();
         Set<Tile> candies = ants.getFoodTiles();
-        // Use at most 50% of the turn time.
-        diffusionMap.timeStep(100, candies, ants.getTimeRemaining()/2);
         
         // Populate "routes" for each ant going to its neighboring cells, by setting the "distance"
         // to the negative of the diffusion value. (higher value -> smaller distance).
         List<Route> foodRoutes = new ArrayList<Route>();
         for (Tile antLoc : sortedAnts) {
             // No need to calculate value for ants who already have orders.
-            if (! allOrders.containsValue(antLoc)) {
+            if (! isClaimed(antLoc)) {
                 for (Aim aim : Aim.values()) {
                     Tile neighbor = ants.getTile(antLoc, aim);
                     foodRoutes.add(new Route(antLoc, neighbor, (int)Math.round(-diffusionMap.getValue(neighbor))));
@@ -354,31 +666,33 @@ public class MyBot extends Bot {
         // In practice, this doesn't seem to happen. Is it because diffusionMap doesn't treat
         // ants as sinks?? Ask Jose (too lazy to read code now).
         int targetedCandies = 0;
-        Map<Tile, Tile> foodOrders = new HashMap<Tile, Tile>(); // avoid repeating an ant's orders
-        // TODO(ipince): i think the foodOrders map is unnecessary; double-check.
         for (Route route : foodRoutes) {
-            // Once we've successfully sent as many ants as there are candies, we're done.
+            // Once we've sent as many ants as there are candies, we're done.
             if (targetedCandies >= candies.size()) {
                 break;
             }
-            if (! foodOrders.containsValue(route.getStart()) &&
-                    doMoveLocation(route.getStart(), route.getEnd())) {
-                foodOrders.put(route.getEnd(), route.getStart());
+            // An ant sent along its first route proposes all its moves.
+            if (! isClaimed(route.getStart())
+                    && proposeScents(route.getStart(), DiffusionMap.FOOD,
+                            DiffusionMap.DEFAULT_FOOD_COST, FOOD_VALUE)) {
                 targetedCandies++;
-                System.err.println("; moving uphill to value " + diffusionMap.getValue(route.getEnd()));
+                if (Log.isDebug(Log.Subsystem.FOOD)) {
+                    Log.debug(Log.Subsystem.FOOD, "Ant at " + route.getStart()
+                            + " moving uphill to value " + diffusionMap.getValue(route.getEnd()));
+                }
             }
         }
     }
     
     private void foodShortestEuclideanRoute(Set<Tile> sortedAnts) {
         // Build routes between every food and every ant.
-        Map<Tile, Tile> foodOrders = new HashMap<Tile, Tile>();
+        Set<Tile> targetedFood = new HashSet<Tile>();
         List<Route> foodRoutes = new ArrayList<Route>();
         Set<Tile> sortedFood = new TreeSet<Tile>(getAnts().getFoodTiles());
 
         for (Tile foodLoc : sortedFood) {
             for (Tile antLoc : sortedAnts) {
-                if (! allOrders.containsValue(antLoc)) {
+                if (! isClaimed(antLoc)) {
                     int distance = getAnts().getDistance(antLoc, foodLoc);
                     Route route = new Route(antLoc, foodLoc, distance);
                     foodRoutes.add(route);
@@ -389,11 +703,79 @@ public class MyBot extends Bot {
         // Assign one food target to each ant, starting with min routes first.
         Collections.sort(foodRoutes);
         for (Route route : foodRoutes) {
-            if (! foodOrders.containsKey(route.getEnd())
-                    && ! foodOrders.containsValue(route.getStart())
-                    && doMoveLocation(route.getStart(), route.getEnd())) {
-                foodOrders.put(route.getEnd(), route.getStart());
-                System.err.println("; fetching FOOD at " + route.getEnd());
+            if (! targetedFood.contains(route.getEnd()) && ! isClaimed(route.getStart())) {
+                targetedFood.add(route.getEnd());
+                proposeTowards(route.getStart(),
+                        getAnts().getDirections(route.getStart(), route.getEnd()),
+                        getSteps(route.getStart(), route.getEnd()) - 1, FOOD_VALUE);
+                if (Log.isDebug(Log.Subsystem.FOOD)) {
+                    Log.debug(Log.Subsystem.FOOD, "Ant at " + route.getStart()
+                            + " fetching FOOD at " + route.getEnd());
+                }
+            }
+        }
+    }
+    
+    private void collectFoodAndAnts(Set<Tile> sortedAnts) {
+        Ants ants = getAnts();
+        freeAnts = new Tile[sortedAnts.size()];
+        freeAntCells = new int[sortedAnts.size()];
+        freeAntCount = 0;
+        for (Tile antLoc : sortedAnts) {
+            if (! isClaimed(antLoc)) {
+                freeAnts[freeAntCount] = antLoc;
+                freeAntCells[freeAntCount++] = ants.index(antLoc);
+            }
+        }
+        foodTiles = ants.getFoodTiles().toArray(new Tile[0]);
+        foodCells = new int[foodTiles.length];
+        for (int f = 0; f < foodTiles.length; f++) {
+            foodCells[f] = ants.index(foodTiles[f]);
+        }
+    }
+
+    /*
+     * Sends an ant towards its food, distance steps away along the given
+     * step: the ant gathers it by standing next to it, so staying there
+     * scores a whole food.
+     */
+    private void fetchFood(Tile antLoc, Tile foodLoc, int distance, Aim step) {
+        Set<Aim> steps = step == null ? Collections.<Aim>emptySet() : Collections.singleton(step);
+        proposeTowards(antLoc, steps, Math.max(0, distance - 1), FOOD_VALUE);
+        if (Log.isDebug(Log.Subsystem.FOOD)) {
+            Log.debug(Log.Subsystem.FOOD, "Ant at " + antLoc + " fetching FOOD at "
+                    + foodLoc + "; " + distance + " steps away");
+        }
+    }
+
+    private void foodAssignment(Set<Tile> sortedAnts) {
+        // Match order-less ants to food by steps around water, one ant per
+        // food, within what is left of the food time.
+        collectFoodAndAnts(sortedAnts);
+        foodAssignment.assign(freeAntCells, freeAntCount, foodCells, foodCells.length,
+                getBudget().getDeadline());
+        if (! foodAssignment.isOptimal()) {
+            Log.warn(Log.Subsystem.FOOD, "Out of time, food assignment finished greedily");
+        }
+        for (int a = 0; a < freeAntCount; a++) {
+            int f = foodAssignment.getFood(a);
+            if (f >= 0) {
+                fetchFood(freeAnts[a], foodTiles[f], foodAssignment.getDistance(a),
+                        foodAssignment.getDirection(a));
+            }
+        }
+    }
+
+    private void foodSimultaneousBfs(Set<Tile> sortedAnts) {
+        // Grow a search from every food at once; each food gets the first
+        // order-less ant its frontier reaches.
+        collectFoodAndAnts(sortedAnts);
+        foodClaims.claim(freeAntCells, freeAntCount, foodCells, foodCells.length);
+        for (int a = 0; a < freeAntCount; a++) {
+            int f = foodClaims.getFood(a);
+            if (f >= 0) {
+                fetchFood(freeAnts[a], foodTiles[f], foodClaims.getDistance(a),
+                        foodClaims.getDirection(a));
             }
         }
     }
@@ -402,53 +784,53 @@ public class MyBot extends Bot {
         // For each ant that doens't have an order yet, make it go to the closest
         // unseen tile.
         for (Tile antLoc : sortedAnts) {
-            if (! allOrders.containsValue(antLoc)) {
-                List<Route> unseenRoutes = new ArrayList<Route>();
+            if (! isClaimed(antLoc)) {
+                Tile nearest = null;
+                int nearestDistance = Integer.MAX_VALUE;
                 for (Tile unseenLoc : unseenTiles) {
                     int distance = getAnts().getDistance(antLoc, unseenLoc);
-                    Route route = new Route(antLoc, unseenLoc, distance);
-                    unseenRoutes.add(route);
+                    if (distance < nearestDistance) {
+                        nearest = unseenLoc;
+                        nearestDistance = distance;
+                    }
                 }
-                Collections.sort(unseenRoutes);
-                for (Route route : unseenRoutes) {
-                    if (doMoveLocation(route.getStart(), route.getEnd())) {
-                        System.err.println(
-                            "; going to EXPLORE " + route.getEnd());
-                        break;
+                if (nearest != null) {
+                    proposeTowards(antLoc, getAnts().getDirections(antLoc, nearest),
+                            getSteps(antLoc, nearest), EXPLORE_VALUE);
+                    if (Log.isDebug(Log.Subsystem.EXPLORATION)) {
+                        Log.debug(Log.Subsystem.EXPLORATION,
+                            "Ant at " + antLoc + " going to EXPLORE " + nearest);
                     }
                 }
             }
         }
     }
     
+    private void exploreDiffusion(Set<Tile> sortedAnts) {
+        // For each order-less ant, propose every move by the scent of unseen
+        // tiles at its destination; the battle there, if any, weighs in.
+        for (Tile antLoc : sortedAnts) {
+            if (! isClaimed(antLoc)
+                    && proposeScents(antLoc, unexploredChannel, UNEXPLORED_STRENGTH, EXPLORE_VALUE)) {
+                if (Log.isDebug(Log.Subsystem.EXPLORATION)) {
+                    Log.debug(Log.Subsystem.EXPLORATION, "Ant at " + antLoc
+                            + " going to EXPLORE with scent "
+                            + diffusionMap.getValue(antLoc, unexploredChannel));
+                }
+            }
+        }
+    }
+    
     private void exploreLeastVisited(Set<Tile> sortedAnts) {
-        // For each order-less ant, send it to the least-visited neighboring
-        // tile.
-        for (final Tile antLoc : sortedAnts) {
-            if (! allOrders.containsValue(antLoc)) {
-//              System.err.println("Finding EXPLORE target for ant at " + antLoc);
-                // Sort directions by num-times-visited.
-                List<Aim> directions =
-                    new ArrayList<Aim>(Arrays.asList(Aim.values()));
-                Collections.shuffle(directions);
-                Collections.sort(directions, new Comparator<Aim>() {
-                    public int compare(Aim o1, Aim o2) {
-                        return visitedTiles.get(getAnts().getTile(antLoc, o1)) -
-                                visitedTiles.get(getAnts().getTile(antLoc, o2));
-                    }
-                });
-                for (Aim direction : directions) {
-//                    System.err.println("Trying to move " + direction + ",
-//                      which has been visited " +
-//                      visitedTiles.get(getAnts().getTile(antLoc, direction))
-//                      + " times.");
-                    if (doMoveDirection(antLoc, direction)) {
-                        System.err.println(
-                            "; going to EXPLORE "
-                             + getAnts().getTile(antLoc, direction));
-                        break;
-                    }
+        // For each order-less ant, propose every move, a step's worth less
+        // for every earlier visit to its destination.
+        for (Tile antLoc : sortedAnts) {
+            if (! isClaimed(antLoc)) {
+                for (Aim direction : shuffledAims()) {
+                    Tile next = getAnts().getTile(antLoc, direction);
+                    proposeMove(antLoc, direction, EXPLORE_VALUE - STEP_VALUE * visitedTiles.get(next));
                 }
+                proposeMove(antLoc, null, EXPLORE_VALUE - STEP_VALUE * visitedTiles.get(antLoc));
             }
         }
     }
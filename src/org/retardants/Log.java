@@ -0,0 +1,226 @@
+package org.retardants;
+
+import java.io.PrintStream;
+
+/**
+ * A small logging facade for the bot, writing to the standard error stream.
+ *
+ * Every message belongs to a Subsystem and has a Level, and each subsystem
+ * has its own threshold: a message is written only if its level is at or
+ * below the threshold of its subsystem. Callers building a message out of
+ * several parts should guard it, so that no formatting happens at all when
+ * it is disabled:
+ *
+ * <pre>
+ * if (Log.isDebug(Log.Subsystem.FOOD))
+ *     Log.debug(Log.Subsystem.FOOD, "Ant at " + ant + " fetching " + food);
+ * </pre>
+ *
+ * Log messages may also be spooled into a ring buffer holding the last few
+ * lines instead of being written at once. The spool is written out with
+ * dumpSpool(), eg. only when a turn overruns its time, and dropped with
+ * clearSpool() otherwise.
+ *
+ * The initial configuration comes from system properties:
+ * <ul>
+ * <li>retardants.log: threshold of every subsystem (error, warn, info,
+ *     debug or trace), warn by default</li>
+ * <li>retardants.log.SUBSYSTEM, eg. retardants.log.diffusion: threshold of
+ *     one subsystem</li>
+ * <li>retardants.log.spool: number of lines to spool, 0 (the default) to
+ *     write every message at once</li>
+ * </ul>
+ */
+public final class Log {
+
+    /**
+     * The importance of a message, from most to least important.
+     */
+    public enum Level {
+        ERROR, WARN, INFO, DEBUG, TRACE
+    }
+
+    /**
+     * The parts of the bot that log messages.
+     */
+    public enum Subsystem {
+        BOT, DIFFUSION, PATH, FOOD, BATTLE, EXPLORATION
+    }
+
+    private static final String PROPERTY = "retardants.log";
+
+    private static PrintStream out = System.err;
+
+    /* Threshold of every subsystem, as a Level ordinal */
+    private static final int[] thresholds = new int[Subsystem.values().length];
+
+    /* Ring buffer of the last spooled lines, null when not spooling */
+    private static String[] spool;
+    private static int spoolStart = 0;
+    private static int spoolSize = 0;
+    private static int spoolDropped = 0;
+
+    static {
+        setLevel(parseLevel(System.getProperty(PROPERTY), Level.WARN));
+        for (Subsystem subsystem : Subsystem.values()) {
+            String value = System.getProperty(PROPERTY + "." + subsystem.name().toLowerCase());
+            if (value != null) {
+                setLevel(subsystem, parseLevel(value, Level.WARN));
+            }
+        }
+        setSpool(Integer.getInteger(PROPERTY + ".spool", 0));
+    }
+
+    private Log() {
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Writes messages to the given stream instead of the standard error stream.
+     */
+    public static void setOutput(PrintStream output) {
+        out = output;
+    }
+
+    /**
+     * Sets the threshold of every subsystem.
+     */
+    public static void setLevel(Level level) {
+        for (Subsystem subsystem : Subsystem.values()) {
+            setLevel(subsystem, level);
+        }
+    }
+
+    /**
+     * Sets the threshold of one subsystem.
+     */
+    public static void setLevel(Subsystem subsystem, Level level) {
+        thresholds[subsystem.ordinal()] = level.ordinal();
+    }
+
+    /**
+     * @return the threshold of subsystem
+     */
+    public static Level getLevel(Subsystem subsystem) {
+        return Level.values()[thresholds[subsystem.ordinal()]];
+    }
+
+    /**
+     * @return true iff messages of the given level and subsystem are written
+     */
+    public static boolean isEnabled(Subsystem subsystem, Level level) {
+        return level.ordinal() <= thresholds[subsystem.ordinal()];
+    }
+
+    public static boolean isInfo(Subsystem subsystem) {
+        return Level.INFO.ordinal() <= thresholds[subsystem.ordinal()];
+    }
+
+    public static boolean isDebug(Subsystem subsystem) {
+        return Level.DEBUG.ordinal() <= thresholds[subsystem.ordinal()];
+    }
+
+    public static boolean isTrace(Subsystem subsystem) {
+        return Level.TRACE.ordinal() <= thresholds[subsystem.ordinal()];
+    }
+
+    /**
+     * Writes, or spools, message if its level and subsystem are enabled.
+     */
+    public static void log(Subsystem subsystem, Level level, String message) {
+        if (!isEnabled(subsystem, level)) {
+            return;
+        }
+        if (spool == null) {
+            out.println(message);
+            return;
+        }
+        int end = spoolStart + spoolSize;
+        spool[end % spool.length] = message;
+        if (spoolSize < spool.length) {
+            spoolSize++;
+        } else {
+            spoolStart = (spoolStart + 1) % spool.length;
+            spoolDropped++;
+        }
+    }
+
+    public static void error(Subsystem subsystem, String message) {
+        log(subsystem, Level.ERROR, message);
+    }
+
+    public static void warn(Subsystem subsystem, String message) {
+        log(subsystem, Level.WARN, message);
+    }
+
+    public static void info(Subsystem subsystem, String message) {
+        log(subsystem, Level.INFO, message);
+    }
+
+    public static void debug(Subsystem subsystem, String message) {
+        log(subsystem, Level.DEBUG, message);
+    }
+
+    public static void trace(Subsystem subsystem, String message) {
+        log(subsystem, Level.TRACE, message);
+    }
+
+    /**
+     * Spools up to capacity of the last messages instead of writing them at
+     * once, or, with a capacity of 0, stops spooling. Changing the capacity
+     * drops the spooled messages.
+     */
+    public static void setSpool(int capacity) {
+        spool = capacity > 0 ? new String[capacity] : null;
+        clearSpool();
+    }
+
+    /**
+     * @return whether messages are being spooled
+     */
+    public static boolean isSpooling() {
+        return spool != null;
+    }
+
+    /**
+     * @return the number of messages currently spooled
+     */
+    public static int getSpooled() {
+        return spoolSize;
+    }
+
+    /**
+     * Writes every spooled message, oldest first, and empties the spool.
+     */
+    public static void dumpSpool() {
+        if (spoolDropped > 0) {
+            out.println("(" + spoolDropped + " earlier log lines dropped)");
+        }
+        for (int i = 0; i < spoolSize; i++) {
+            out.println(spool[(spoolStart + i) % spool.length]);
+        }
+        clearSpool();
+    }
+
+    /**
+     * Drops every spooled message.
+     */
+    public static void clearSpool() {
+        if (spool != null) {
+            java.util.Arrays.fill(spool, null);
+        }
+        spoolStart = 0;
+        spoolSize = 0;
+        spoolDropped = 0;
+    }
+}
@@ -0,0 +1,270 @@
+package org.retardants;
+
+/**
+ * Splits the time of a turn between its phases, and keeps track of how long
+ * each phase actually takes over the game.
+ *
+ * A turn runs its phases in the order of Phase, and beginPhase() gives each
+ * one a deadline: its share of whatever time is left, short of a safety
+ * margin before the turn time. Time left over by a fast phase flows on to the
+ * later ones. Every deadline also leaves the phases after it their shares of
+ * the whole turn, so the time a slow phase runs over comes out of the phases
+ * that start before those reserves, never out of the later ones, and no
+ * phase may use the margin.
+ *
+ * Times are measured with System.nanoTime(). Each phase records its duration
+ * in a histogram of power of two buckets of microseconds, over every turn.
+ */
+public final class TurnBudget {
+
+    /**
+     * The phases of a turn, in the order in which they run.
+     */
+    public enum Phase {
+        PARSE, VISION, DIFFUSION, FOOD, BATTLE, EXPLORATION, OUTPUT
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    /* Relative share of every phase by default, indexed by Phase ordinal */
+    private static final double[] DEFAULT_SHARES = { 1, 1, 2, 5, 2, 2, 1 };
+
+    /* Bucket b counts durations of less than 2^b microseconds */
+    private static final int BUCKETS = 24;
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final long turnNanos;
+    private final long marginNanos;
+    private final double[] shares = DEFAULT_SHARES.clone();
+
+    private long turnStart;
+    private boolean inTurn = false;
+    private Phase phase = null;
+    private long phaseStart;
+    private long deadline;
+
+    private final long[][] histograms = new long[PHASES.length][BUCKETS];
+    private final long[] totals = new long[PHASES.length];
+    private final long[] maxima = new long[PHASES.length];
+    private final int[] overruns = new int[PHASES.length];
+    private int turns = 0;
+
+    /**
+     * @param turnTime time of a turn, in milliseconds
+     * @param margin time to keep free at the end of every turn, in milliseconds
+     */
+    public TurnBudget(int turnTime, int margin) {
+        if (margin < 0 || margin > turnTime) {
+            throw new IllegalArgumentException("Margin " + margin + " out of [0, " + turnTime + "]");
+        }
+        this.turnNanos = turnTime * NANOS_PER_MILLI;
+        this.marginNanos = margin * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Sets the share of phase, relative to the shares of the other phases.
+     */
+    public void setShare(Phase phase, double share) {
+        if (share <= 0) {
+            throw new IllegalArgumentException("Share of " + phase + " must be positive: " + share);
+        }
+        shares[phase.ordinal()] = share;
+    }
+
+    public double getShare(Phase phase) {
+        return shares[phase.ordinal()];
+    }
+
+    /**
+     * Starts a turn now, ending the previous one if it was not ended.
+     */
+    public void startTurn() {
+        startTurn(System.nanoTime());
+    }
+
+    void startTurn(long now) {
+        if (inTurn) {
+            endTurn(now);
+        }
+        inTurn = true;
+        turnStart = now;
+        turns++;
+    }
+
+    /**
+     * Ends the current phase, if any, and starts phase now. Phases skipped
+     * since the current one simply record nothing this turn.
+     */
+    public void beginPhase(Phase phase) {
+        beginPhase(phase, System.nanoTime());
+    }
+
+    void beginPhase(Phase phase, long now) {
+        if (!inTurn) {
+            return;
+        }
+        endPhase(now);
+        double total = 0;
+        double later = 0;
+        for (int p = 0; p < PHASES.length; p++) {
+            total += shares[p];
+            if (p >= phase.ordinal()) {
+                later += shares[p];
+            }
+        }
+        double share = shares[phase.ordinal()];
+        long end = turnStart + turnNanos - marginNanos;
+        long available = Math.max(0, end - now);
+        long reserved = (long)((turnNanos - marginNanos) * (later - share) / total);
+        this.phase = phase;
+        this.phaseStart = now;
+        this.deadline = Math.max(now, Math.min(now + (long)(available * share / later), end - reserved));
+    }
+
+    /**
+     * Ends the current phase, if any, recording how long it took.
+     */
+    public void endPhase() {
+        endPhase(System.nanoTime());
+    }
+
+    void endPhase(long now) {
+        if (phase == null) {
+            return;
+        }
+        int p = phase.ordinal();
+        long elapsed = now - phaseStart;
+        long micros = elapsed / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        histograms[p][bucket]++;
+        totals[p] += elapsed;
+        maxima[p] = Math.max(maxima[p], elapsed);
+        if (now > deadline) {
+            overruns[p]++;
+        }
+        phase = null;
+    }
+
+    /**
+     * Ends the current phase and turn.
+     */
+    public void endTurn() {
+        endTurn(System.nanoTime());
+    }
+
+    void endTurn(long now) {
+        endPhase(now);
+        inTurn = false;
+    }
+
+    /**
+     * @return the phase running now, or null
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the System.nanoTime() by which the current phase should end
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return milliseconds left to the current phase, 0 if it is over time
+     */
+    public long getPhaseRemaining() {
+        return Math.max(0, (deadline - System.nanoTime()) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * @return whether the current phase is past its deadline
+     */
+    public boolean isExpired() {
+        return System.nanoTime() >= deadline;
+    }
+
+    /**
+     * @return milliseconds left to the whole turn, short of the margin
+     */
+    public long getTurnRemaining() {
+        return (turnStart + turnNanos - marginNanos - System.nanoTime()) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return the number of turns started so far
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns a copy of the histogram of phase: bucket b counts the turns in
+     * which phase took less than 2^b microseconds (and at least 2^(b-1)), and
+     * the last bucket also counts every longer one.
+     */
+    public long[] getHistogram(Phase phase) {
+        return histograms[phase.ordinal()].clone();
+    }
+
+    /**
+     * @return the number of turns in which phase ran past its deadline
+     */
+    public int getOverruns(Phase phase) {
+        return overruns[phase.ordinal()];
+    }
+
+    /**
+     * @return the longest time phase took in one turn, in nanoseconds
+     */
+    public long getMaximum(Phase phase) {
+        return maxima[phase.ordinal()];
+    }
+
+    /**
+     * @return the total time phase took over every turn, in nanoseconds
+     */
+    public long getTotal(Phase phase) {
+        return totals[phase.ordinal()];
+    }
+
+    /**
+     * Returns one line per phase with its mean and longest time, number of
+     * overruns and non-empty histogram buckets, eg.
+     * "FOOD mean 3.2ms max 41.0ms overruns 1 [<4ms:12 <8ms:80 <64ms:3]".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Turn budget over " + turns + " turns");
+        for (Phase p : PHASES) {
+            int i = p.ordinal();
+            long count = 0;
+            for (long c : histograms[i]) {
+                count += c;
+            }
+            sb.append('\n').append(p)
+                .append(" mean ").append(millis(count == 0 ? 0 : totals[i] / count))
+                .append(" max ").append(millis(maxima[i]))
+                .append(" overruns ").append(overruns[i])
+                .append(" [");
+            String separator = "";
+            for (int b = 0; b < BUCKETS; b++) {
+                if (histograms[i][b] > 0) {
+                    long limit = 1L << b;
+                    sb.append(separator)
+                        .append(limit < 1000 ? "<" + limit + "us" : "<" + limit / 1000 + "ms")
+                        .append(':').append(histograms[i][b]);
+                    separator = " ";
+                }
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return (nanos / 100000) / 10.0 + "ms";
+    }
+}
@@ -1,161 +1,217 @@
 package org.retardants.adt;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
-
 /**
  * Handles system input stream parsing.
+ *
+ * Lines are parsed as they are read, straight from the bytes of the input:
+ * numbers are decoded in place and every update line is dispatched to
+ * addWater, addAnt, etc. at once, so a turn costs no String, List or Scanner
+ * no matter how many lines it has.
  */
 public abstract class AbstractSystemInputParser extends AbstractSystemInputReader {
-    private static final String READY = "ready";
+    private static final byte[] READY = token("ready");
+
+    private static final byte[] GO = token("go");
 
-    private static final String GO = "go";
+    private static final byte[] TURN = token("turn");
 
     private static final char COMMENT_CHAR = '#';
 
-    private final List<String> input = new ArrayList<String>();
+    /* At most this many numbers are read from a line */
+    private static final int MAX_NUMBERS = 3;
 
     private enum SetupToken {
         LOADTIME, TURNTIME, ROWS, COLS, TURNS, VIEWRADIUS2, ATTACKRADIUS2, SPAWNRADIUS2;
 
-        private static final Pattern PATTERN = compilePattern(SetupToken.class);
+        private final byte[] bytes = token(name().toLowerCase());
     }
 
-    private enum UpdateToken {
-        W, A, F, D, H;
-
-        private static final Pattern PATTERN = compilePattern(UpdateToken.class);
-    }
+    private static final SetupToken[] SETUP_TOKENS = SetupToken.values();
 
-    private static Pattern compilePattern(Class<? extends Enum> clazz) {
-        StringBuilder builder = new StringBuilder("(");
-        for (Enum enumConstant : clazz.getEnumConstants()) {
-            if (enumConstant.ordinal() > 0) {
-                builder.append("|");
-            }
-            builder.append(enumConstant.name());
+    private static byte[] token(String name) {
+        byte[] bytes = new byte[name.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)name.charAt(i);
         }
-        builder.append(")");
-        return Pattern.compile(builder.toString());
+        return bytes;
     }
 
+    /* Setup values, indexed by SetupToken ordinal */
+    private final int[] setupValues = new int[SETUP_TOKENS.length];
+
+    /* Numbers of the line being parsed */
+    private final int[] numbers = new int[MAX_NUMBERS];
+
+    private boolean ready = false;
+
+    private boolean updating = false;
+
     /**
-     * Collects lines read from system input stream until a keyword appears and then parses them.
+     * Parses a line as soon as it is read: setup lines until "ready", and update lines until
+     * every "go".
      */
     @Override
-    public void processLine(String line) {
-        if (line.equals(READY)) {
-            parseSetup(input);
+    public void processLine(byte[] line, int start, int end) {
+        // Drop the comment, then trim.
+        for (int i = start; i < end; i++) {
+            if (line[i] == COMMENT_CHAR) {
+                end = i;
+                break;
+            }
+        }
+        while (start < end && line[start] <= ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+
+        if (matches(line, start, end, READY)) {
+            ready = true;
+            setup(setupValues[SetupToken.LOADTIME.ordinal()],
+                    setupValues[SetupToken.TURNTIME.ordinal()],
+                    setupValues[SetupToken.ROWS.ordinal()],
+                    setupValues[SetupToken.COLS.ordinal()],
+                    setupValues[SetupToken.TURNS.ordinal()],
+                    setupValues[SetupToken.VIEWRADIUS2.ordinal()],
+                    setupValues[SetupToken.ATTACKRADIUS2.ordinal()],
+                    setupValues[SetupToken.SPAWNRADIUS2.ordinal()]);
             finishTurn();
-            input.clear();
-        } else if (line.equals(GO)) {
-            parseUpdate(input);
+        } else if (!ready) {
+            parseSetup(line, start, end);
+        } else if (matches(line, start, end, GO)) {
+            beginUpdate();
+            afterUpdate();
+            updating = false;
             doTurn();
             finishTurn();
-            input.clear();
-        } else if (!line.isEmpty()) {
-            input.add(line);
+        } else if (startsWord(line, start, end, TURN)) {
+            // The turn line comes first, as close as possible to the start of the turn.
+            beginUpdate();
+        } else {
+            beginUpdate();
+            parseUpdate(line, start, end);
+        }
+    }
+
+    private void beginUpdate() {
+        if (!updating) {
+            updating = true;
+            beforeUpdate();
         }
     }
 
     /**
-     * Parses the setup information from system input stream.
-     * 
-     * @param input setup information
+     * Parses a trimmed setup line, such as "rows 43". Unknown keys are ignored.
      */
-    public void parseSetup(List<String> input) {
-        int loadTime = 0;
-        int turnTime = 0;
-        int rows = 0;
-        int cols = 0;
-        int turns = 0;
-        int viewRadius2 = 0;
-        int attackRadius2 = 0;
-        int spawnRadius2 = 0;
-        for (String line : input) {
-            line = removeComment(line);
-            if (line.isEmpty()) {
-                continue;
+    private void parseSetup(byte[] line, int start, int end) {
+        for (SetupToken setupToken : SETUP_TOKENS) {
+            if (startsWord(line, start, end, setupToken.bytes)) {
+                if (parseNumbers(line, start + setupToken.bytes.length, end) > 0) {
+                    setupValues[setupToken.ordinal()] = numbers[0];
+                }
+                return;
             }
-            Scanner scanner = new Scanner(line);
-            if (!scanner.hasNext()) {
-                continue;
+        }
+    }
+
+    /**
+     * Parses a trimmed update line, such as "a 12 7 0", and dispatches it.
+     */
+    private void parseUpdate(byte[] line, int start, int end) {
+        if (end - start < 2 || line[start + 1] != ' ') {
+            return;
+        }
+        int count = parseNumbers(line, start + 1, end);
+        int row = numbers[0];
+        int col = numbers[1];
+        int owner = numbers[2];
+        switch (line[start]) {
+        case 'w':
+            if (count == 2) {
+                addWater(row, col);
             }
-            String token = scanner.next().toUpperCase();
-            if (!SetupToken.PATTERN.matcher(token).matches()) {
-                continue;
+            break;
+        case 'f':
+            if (count == 2) {
+                addFood(row, col);
             }
-            SetupToken setupToken = SetupToken.valueOf(token);
-            switch (setupToken) {
-            case LOADTIME:
-                loadTime = scanner.nextInt();
-                break;
-            case TURNTIME:
-                turnTime = scanner.nextInt();
-                break;
-            case ROWS:
-                rows = scanner.nextInt();
-                break;
-            case COLS:
-                cols = scanner.nextInt();
-                break;
-            case TURNS:
-                turns = scanner.nextInt();
-                break;
-            case VIEWRADIUS2:
-                viewRadius2 = scanner.nextInt();
-                break;
-            case ATTACKRADIUS2:
-                attackRadius2 = scanner.nextInt();
-                break;
-            case SPAWNRADIUS2:
-                spawnRadius2 = scanner.nextInt();
-                break;
+            break;
+        case 'a':
+            if (count == 3) {
+                addAnt(row, col, owner);
             }
+            break;
+        case 'h':
+            if (count == 3) {
+                addHill(row, col, owner);
+            }
+            break;
+        case 'd':
+            if (count == 3) {
+                removeAnt(row, col, owner);
+            }
+            break;
         }
-        setup(loadTime, turnTime, rows, cols, turns, viewRadius2, attackRadius2, spawnRadius2);
     }
 
     /**
-     * Parses the update information from system input stream.
-     * 
-     * @param input update information
+     * Decodes the space separated integers of line[start..end) into numbers.
+     *
+     * @return how many integers were found, or -1 if anything else was found or there are too
+     *         many of them
      */
-    public void parseUpdate(List<String> input) {
-        beforeUpdate();
-        for (String line : input) {
-            line = removeComment(line);
-            if (line.isEmpty()) {
+    private int parseNumbers(byte[] line, int start, int end) {
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            byte c = line[i];
+            if (c == ' ' || c == '\t') {
+                i++;
                 continue;
             }
-            
-            String parts[] = line.split(" ");
-            if (parts.length == 0) {
-                continue;
-            } else if (parts.length == 3) {
-                int row = Integer.parseInt(parts[1]);
-                int col = Integer.parseInt(parts[2]);
-                if (parts[0].equals("w")) {
-                    addWater(row, col);
-                } else if (parts[0].equals("f")) {
-                    addFood(row, col);
-                }
-            } else if (parts.length == 4) {
-                int row = Integer.parseInt(parts[1]);
-                int col = Integer.parseInt(parts[2]);
-                int owner = Integer.parseInt(parts[3]);
-                if (parts[0].equals("a")) {
-                    addAnt(row, col, owner);
-                } else if (parts[0].equals("h")) {
-                    addHill(row, col, owner);
-                } else if (parts[0].equals("d")) {
-                    removeAnt(row, col, owner);
-                }
+            boolean negative = c == '-';
+            if (negative) {
+                i++;
             }
+            int digits = i;
+            int value = 0;
+            while (i < end && line[i] >= '0' && line[i] <= '9') {
+                value = value * 10 + (line[i++] - '0');
+            }
+            if (i == digits || count == MAX_NUMBERS
+                    || (i < end && line[i] != ' ' && line[i] != '\t')) {
+                return -1;
+            }
+            numbers[count++] = negative ? -value : value;
         }
-        afterUpdate();
+        return count;
+    }
+
+    private static boolean matches(byte[] line, int start, int end, byte[] word) {
+        return end - start == word.length && startsWith(line, start, word);
+    }
+
+    /*
+     * Whether the line starts with word, followed by its end or a space.
+     */
+    private static boolean startsWord(byte[] line, int start, int end, byte[] word) {
+        int length = word.length;
+        return end - start >= length && startsWith(line, start, word)
+                && (end - start == length || line[start + length] == ' '
+                        || line[start + length] == '\t');
+    }
+
+    private static boolean startsWith(byte[] line, int start, byte[] word) {
+        for (int i = 0; i < word.length; i++) {
+            if (line[start + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -240,15 +296,4 @@ public abstract class AbstractSystemInputParser extends AbstractSystemInputReade
         System.out.println("go");
         System.out.flush();
     }
-
-    private String removeComment(String line) {
-        int commentCharIndex = line.indexOf(COMMENT_CHAR);
-        String lineWithoutComment;
-        if (commentCharIndex >= 0) {
-            lineWithoutComment = line.substring(0, commentCharIndex).trim();
-        } else {
-            lineWithoutComment = line;
-        }
-        return lineWithoutComment;
-    }
 }
@@ -1,35 +1,90 @@
 package org.retardants.adt;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Handles system input stream reading.
+ *
+ * Input is read in large chunks into a buffer allocated once, and every line
+ * is handed over as a range of that buffer, so reading a turn creates no
+ * String. Only a line split across two chunks is copied, into a second
+ * reusable buffer.
  */
 public abstract class AbstractSystemInputReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] carry = new byte[256];
+
     /**
      * Reads system input stream line by line. All characters are converted to lower case and each
-     * line is passed for processing to {@link #processLine(String)} method.
-     * 
+     * line is passed for processing to {@link #processLine(byte[], int, int)} method.
+     *
      * @throws java.io.IOException if an I/O error occurs
      */
     public void readSystemInput() throws IOException {
-        StringBuilder line = new StringBuilder();
-        int c;
-        while ((c = System.in.read()) >= 0) {
-            if (c == '\r' || c == '\n') {
-                processLine(line.toString().toLowerCase().trim());
-                line.setLength(0);
-            } else {
-                line = line.append((char)c);
+        readInput(System.in);
+    }
+
+    /**
+     * Same as {@link #readSystemInput()}, reading from the given stream.
+     *
+     * @param in stream to read until its end
+     *
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    public void readInput(InputStream in) throws IOException {
+        int carried = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                byte c = buffer[i];
+                if (c == '\r' || c == '\n') {
+                    if (carried > 0) {
+                        carried = append(carried, start, i);
+                        processLine(carry, 0, carried);
+                        carried = 0;
+                    } else {
+                        processLine(buffer, start, i);
+                    }
+                    start = i + 1;
+                } else if (c >= 'A' && c <= 'Z') {
+                    buffer[i] = (byte)(c + ('a' - 'A'));
+                }
             }
+            carried = append(carried, start, read);
+        }
+        // The last line may end with the stream rather than a newline.
+        if (carried > 0) {
+            processLine(carry, 0, carried);
+        }
+    }
+
+    /*
+     * Appends buffer[start..end) to the carried over part of a line, and
+     * returns its new length.
+     */
+    private int append(int carried, int start, int end) {
+        int length = carried + end - start;
+        if (length > carry.length) {
+            byte[] larger = new byte[Math.max(length, 2 * carry.length)];
+            System.arraycopy(carry, 0, larger, 0, carried);
+            carry = larger;
         }
+        System.arraycopy(buffer, start, carry, carried, end - start);
+        return length;
     }
 
     /**
      * Process a line read out by {@link #readSystemInput()} method in a way defined by subclass
-     * implementation.
-     * 
-     * @param line single, trimmed line of system input
+     * implementation. The line is only valid during the call, and is not trimmed.
+     *
+     * @param line buffer holding the line, in lower case
+     * @param start index of the first byte of the line
+     * @param end index just past the last byte of the line
      */
-    public abstract void processLine(String line);
+    public abstract void processLine(byte[] line, int start, int end);
 }
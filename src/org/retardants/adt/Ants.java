@@ -3,6 +3,7 @@ package org.retardants.adt;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -29,13 +30,32 @@ public class Ants {
 
     private final int spawnRadius2;
 
-    private final boolean visible[][];
+    private final Vision vision;
 
-    private final Set<Tile> visionOffsets;
+    private int myAntCells[] = new int[64];
+
+    private final int neighbors[];
+
+    private final Tile tiles[];
 
     private long turnStartTime;
 
-    private final Ilk map[][];
+    private int turn = 0;
+
+    // Turn in which each location was last visible, until it is visible again; 0 if never.
+    private final int lastSeen[];
+
+    // Turn in which a hill was last reported at each location.
+    private final int hillTurns[];
+
+    private static final Ilk ILKS[] = Ilk.values();
+
+    // One bitset per ilk over the flat indices, indexed by ilk ordinal: bit i of word i >>> 6
+    // is set iff location i has that ilk. LAND is the absence of every other bit, and its
+    // bitset stays empty. A location has at most one bit set.
+    private final long layers[][];
+
+    private final int words;
 
     private final Set<Tile> myAnts = new HashSet<Tile>();
 
@@ -47,7 +67,7 @@ public class Ants {
 
     private final Set<Tile> foodTiles = new HashSet<Tile>();
 
-    private final Set<Order> orders = new HashSet<Order>();
+    private final OrderBuffer orders = new OrderBuffer();
 
     /**
      * Creates new {@link Ants} object.
@@ -71,22 +91,27 @@ public class Ants {
         this.viewRadius2 = viewRadius2;
         this.attackRadius2 = attackRadius2;
         this.spawnRadius2 = spawnRadius2;
-        map = new Ilk[rows][cols];
-        for (Ilk[] row : map) {
-            Arrays.fill(row, Ilk.LAND);
-        }
-        visible = new boolean[rows][cols];
-        for (boolean[] row : visible) {
-            Arrays.fill(row, false);
+        words = (rows * cols + 63) >>> 6;
+        layers = new long[ILKS.length][words];
+        vision = new Vision(rows, cols, viewRadius2);
+        lastSeen = new int[rows * cols];
+        hillTurns = new int[rows * cols];
+        // intern one tile per location
+        tiles = new Tile[rows * cols];
+        for (int row = 0; row < rows; ++row) {
+            for (int col = 0; col < cols; ++col) {
+                tiles[index(row, col)] = new Tile(row, col);
+            }
         }
-        // calc vision offsets
-        visionOffsets = new HashSet<Tile>();
-        int mx = (int)Math.sqrt(viewRadius2);
-        for (int row = -mx; row <= mx; ++row) {
-            for (int col = -mx; col <= mx; ++col) {
-                int d = row * row + col * col;
-                if (d <= viewRadius2) {
-                    visionOffsets.add(new Tile(row, col));
+        // calc neighbor table
+        neighbors = new int[rows * cols * 4];
+        for (int row = 0; row < rows; ++row) {
+            for (int col = 0; col < cols; ++col) {
+                int index = index(row, col);
+                for (Aim aim : Aim.values()) {
+                    int r = (row + aim.getRowDelta() + rows) % rows;
+                    int c = (col + aim.getColDelta() + cols) % cols;
+                    neighbors[index * 4 + aim.ordinal()] = index(r, c);
                 }
             }
         }
@@ -173,6 +198,35 @@ public class Ants {
         this.turnStartTime = turnStartTime;
     }
 
+    /**
+     * Starts the next turn. Turn 0 is the setup turn.
+     */
+    public void nextTurn() {
+        turn++;
+    }
+
+    /**
+     * Returns the number of the current turn, 0 during setup.
+     * 
+     * @return the number of the current turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the last turn in which a location was visible.
+     * 
+     * @param tile location on the game map
+     * 
+     * @return the current turn if <code>tile</code> is visible, the last turn it was visible
+     *         otherwise, or 0 if it has never been visible
+     */
+    public int getLastSeen(Tile tile) {
+        int index = index(tile);
+        return vision.isVisible(index) ? turn : lastSeen[index];
+    }
+
     /**
      * Returns how much time the bot has still has to take its turn before timing out.
      * 
@@ -190,7 +244,25 @@ public class Ants {
      * @return ilk at the <cod>tile</code>
      */
     public Ilk getIlk(Tile tile) {
-        return map[tile.getRow()][tile.getCol()];
+        return getIlk(index(tile));
+    }
+
+    /**
+     * Returns ilk at the location with the specified flat index.
+     * 
+     * @param index flat index of a location on the game map
+     * 
+     * @return ilk at <code>index</code>
+     */
+    public Ilk getIlk(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        for (int ilk = 0; ilk < ILKS.length; ilk++) {
+            if ((layers[ilk][word] & bit) != 0) {
+                return ILKS[ilk];
+            }
+        }
+        return Ilk.LAND;
     }
 
     /**
@@ -200,7 +272,73 @@ public class Ants {
      * @param ilk ilk to be set at <code>tile</code>
      */
     public void setIlk(Tile tile, Ilk ilk) {
-        map[tile.getRow()][tile.getCol()] = ilk;
+        int index = index(tile);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        for (long[] layer : layers) {
+            layer[word] &= ~bit;
+        }
+        if (ilk != Ilk.LAND) {
+            layers[ilk.ordinal()][word] |= bit;
+        }
+    }
+
+    /**
+     * Checks if the location with the specified flat index is passable, ie. not water.
+     * 
+     * @param index flat index of a location on the game map
+     * 
+     * @return <code>true</code> if the location is passable
+     */
+    public boolean isPassable(int index) {
+        return (layers[Ilk.WATER.ordinal()][index >>> 6] & (1L << index)) == 0;
+    }
+
+    /**
+     * Checks if the location with the specified flat index is unoccupied, ie. land or a dead ant.
+     * 
+     * @param index flat index of a location on the game map
+     * 
+     * @return <code>true</code> if the location is unoccupied
+     */
+    public boolean isUnoccupied(int index) {
+        int word = index >>> 6;
+        long occupied = layers[Ilk.WATER.ordinal()][word] | layers[Ilk.FOOD.ordinal()][word]
+                | layers[Ilk.MY_ANT.ordinal()][word] | layers[Ilk.ENEMY_ANT.ordinal()][word];
+        return (occupied & (1L << index)) == 0;
+    }
+
+    /**
+     * Returns the bitset of the locations with the specified ilk: bit <code>i & 63</code> of
+     * word <code>i >>> 6</code> is set iff the location with flat index <code>i</code> has
+     * that ilk. Bulk queries may combine these a word at a time; they must not be modified.
+     * 
+     * @param ilk any ilk but LAND
+     * 
+     * @return the bitset of the locations with <code>ilk</code>
+     */
+    public long[] getLayer(Ilk ilk) {
+        return layers[ilk.ordinal()];
+    }
+
+    /**
+     * Fills <code>mask</code> with the bitset of the passable and unoccupied locations, a word at
+     * a time. Bits past the last location are cleared.
+     * 
+     * @param mask bitset of at least <code>(rows * cols + 63) / 64</code> words
+     */
+    public void getUnoccupied(long[] mask) {
+        long[] water = layers[Ilk.WATER.ordinal()];
+        long[] food = layers[Ilk.FOOD.ordinal()];
+        long[] myAnt = layers[Ilk.MY_ANT.ordinal()];
+        long[] enemyAnt = layers[Ilk.ENEMY_ANT.ordinal()];
+        for (int w = 0; w < words; w++) {
+            mask[w] = ~(water[w] | food[w] | myAnt[w] | enemyAnt[w]);
+        }
+        int tail = (rows * cols) & 63;
+        if (tail != 0) {
+            mask[words - 1] &= (1L << tail) - 1;
+        }
     }
 
     /**
@@ -212,8 +350,7 @@ public class Ants {
      * @return ilk at the location in <code>direction</code> from <cod>tile</code>
      */
     public Ilk getIlk(Tile tile, Aim direction) {
-        Tile newTile = getTile(tile, direction);
-        return map[newTile.getRow()][newTile.getCol()];
+        return getIlk(neighbor(index(tile), direction));
     }
 
     /**
@@ -225,15 +362,7 @@ public class Ants {
      * @return location in <code>direction</code> from <cod>tile</code>
      */
     public Tile getTile(Tile tile, Aim direction) {
-        int row = (tile.getRow() + direction.getRowDelta()) % rows;
-        if (row < 0) {
-            row += rows;
-        }
-        int col = (tile.getCol() + direction.getColDelta()) % cols;
-        if (col < 0) {
-            col += cols;
-        }
-        return new Tile(row, col);
+        return tiles[neighbor(index(tile), direction)];
     }
 
     /**
@@ -253,7 +382,104 @@ public class Ants {
         if (col < 0) {
             col += cols;
         }
-        return new Tile(row, col);
+        return tiles[index(row, col)];
+    }
+
+    /**
+     * Returns the canonical tile for the specified location. Every location on
+     * the game map has exactly one such instance, created at setup.
+     * 
+     * @param row row index
+     * @param col column index
+     * 
+     * @return the tile at <code>row</code>, <code>col</code>
+     */
+    public Tile tileAt(int row, int col) {
+        return tiles[row * cols + col];
+    }
+
+    /**
+     * Returns the canonical tile for the location with the specified flat
+     * index.
+     * 
+     * @param index flat index of a location on the game map
+     * 
+     * @return the tile at <code>index</code>
+     */
+    public Tile tileAt(int index) {
+        return tiles[index];
+    }
+
+    /**
+     * Returns the flat index of the specified location. Indices range from
+     * <code>0</code> to <code>rows * cols - 1</code>, row by row.
+     * 
+     * @param row row index
+     * @param col column index
+     * 
+     * @return flat index of the location at <code>row</code>, <code>col</code>
+     */
+    public int index(int row, int col) {
+        return row * cols + col;
+    }
+
+    /**
+     * Returns the flat index of the specified location.
+     * 
+     * @param tile location on the game map
+     * 
+     * @return flat index of <code>tile</code>
+     */
+    public int index(Tile tile) {
+        return tile.getRow() * cols + tile.getCol();
+    }
+
+    /**
+     * Returns the row index of the location with the specified flat index.
+     * 
+     * @param index flat index of a location on the game map
+     * 
+     * @return row index of <code>index</code>
+     */
+    public int row(int index) {
+        return index / cols;
+    }
+
+    /**
+     * Returns the column index of the location with the specified flat index.
+     * 
+     * @param index flat index of a location on the game map
+     * 
+     * @return column index of <code>index</code>
+     */
+    public int col(int index) {
+        return index % cols;
+    }
+
+    /**
+     * Returns the flat index of the location in the specified direction from
+     * the location with the specified flat index.
+     * 
+     * @param index flat index of a location on the game map
+     * @param direction direction to look up
+     * 
+     * @return flat index of the location in <code>direction</code> from
+     *         <code>index</code>
+     */
+    public int neighbor(int index, Aim direction) {
+        return neighbors[index * 4 + direction.ordinal()];
+    }
+
+    /**
+     * Returns the precomputed neighbor table, in which the flat index of the
+     * location in direction <code>aim</code> from location <code>index</code>
+     * is stored at <code>index * 4 + aim.ordinal()</code>. Hot loops may read
+     * it directly; it must not be modified.
+     * 
+     * @return the neighbor table of the game map
+     */
+    public int[] getNeighbors() {
+        return neighbors;
     }
 
     /**
@@ -275,7 +501,8 @@ public class Ants {
     }
 
     /**
-     * Returns a set containing all my hills locations.
+     * Returns a set containing all my hills locations, including the ones not visible this turn
+     * but not yet seen razed.
      * 
      * @return a set containing all my hills locations
      */
@@ -284,7 +511,8 @@ public class Ants {
     }
 
     /**
-     * Returns a set containing all enemy hills locations.
+     * Returns a set containing all enemy hills locations, including the ones not visible this
+     * turn but not yet seen razed.
      * 
      * @return a set containing all enemy hills locations
      */
@@ -302,11 +530,11 @@ public class Ants {
     }
 
     /**
-     * Returns all orders sent so far.
+     * Returns all orders issued since the last turn was sent.
      * 
-     * @return all orders sent so far
+     * @return all orders issued so far
      */
-    public Set<Order> getOrders() {
+    public OrderBuffer getOrders() {
         return orders;
     }
 
@@ -318,7 +546,7 @@ public class Ants {
      * @return true if the location is visible
      */
     public boolean isVisible(Tile tile) {
-        return visible[tile.getRow()][tile.getCol()];
+        return vision.isVisible(index(tile));
     }
 
     /**
@@ -381,9 +609,7 @@ public class Ants {
      * Clears game state information about my ants locations.
      */
     public void clearMyAnts() {
-        for (Tile myAnt : myAnts) {
-            map[myAnt.getRow()][myAnt.getCol()] = Ilk.LAND;
-        }
+        Arrays.fill(layers[Ilk.MY_ANT.ordinal()], 0);
         myAnts.clear();
     }
 
@@ -391,9 +617,7 @@ public class Ants {
      * Clears game state information about enemy ants locations.
      */
     public void clearEnemyAnts() {
-        for (Tile enemyAnt : enemyAnts) {
-            map[enemyAnt.getRow()][enemyAnt.getCol()] = Ilk.LAND;
-        }
+        Arrays.fill(layers[Ilk.ENEMY_ANT.ordinal()], 0);
         enemyAnts.clear();
     }
 
@@ -401,9 +625,7 @@ public class Ants {
      * Clears game state information about food locations.
      */
     public void clearFood() {
-        for (Tile food : foodTiles) {
-            map[food.getRow()][food.getCol()] = Ilk.LAND;
-        }
+        Arrays.fill(layers[Ilk.FOOD.ordinal()], 0);
         foodTiles.clear();
     }
 
@@ -425,39 +647,55 @@ public class Ants {
      * Clears game state information about dead ants locations.
      */
     public void clearDeadAnts() {
-        //currently we do not have list of dead ants, so iterate over all map
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                if (map[row][col] == Ilk.DEAD) {
-                    map[row][col] = Ilk.LAND;
-                }
-            }
-        }
+        Arrays.fill(layers[Ilk.DEAD.ordinal()], 0);
     }
 
     /**
-     * Clears visible information
+     * Calculates visible information, moving the view of my ants to their locations this turn.
+     * The locations that became visible or stopped being visible are then available from
+     * {@link #getVision()}. Remembered hills that are visible but were not reported this turn
+     * have been razed, and are forgotten.
      */
-    public void clearVision() {
-        for (int row = 0; row < rows; ++row) {
-            for (int col = 0; col < cols; ++col) {
-                visible[row][col] = false;
-            }
+    public void setVision() {
+        if (myAntCells.length < myAnts.size()) {
+            myAntCells = new int[2 * myAnts.size()];
         }
+        int count = 0;
+        for (Tile antLoc : myAnts) {
+            myAntCells[count++] = index(antLoc);
+        }
+        vision.update(myAntCells, count);
+
+        // Remember when the locations out of sight were last visible.
+        int[] lost = vision.getLost();
+        for (int i = 0; i < vision.getLostCount(); i++) {
+            lastSeen[lost[i]] = turn - 1;
+        }
+        forgetRazedHills(myHills);
+        forgetRazedHills(enemyHills);
     }
 
-    /**
-     * Calculates visible information
+    /*
+     * Removes the hills that are visible but were not reported this turn.
      */
-    public void setVision() {
-        for (Tile antLoc : myAnts) {
-            for (Tile locOffset : visionOffsets) {
-                Tile newLoc = getTile(antLoc, locOffset);
-                visible[newLoc.getRow()][newLoc.getCol()] = true;
+    private void forgetRazedHills(Set<Tile> hills) {
+        for (Iterator<Tile> iter = hills.iterator(); iter.hasNext();) {
+            int index = index(iter.next());
+            if (vision.isVisible(index) && hillTurns[index] != turn) {
+                iter.remove();
             }
         }
     }
 
+    /**
+     * Returns the vision of my ants, as of the last call to {@link #setVision()}.
+     * 
+     * @return the vision of my ants
+     */
+    public Vision getVision() {
+        return vision;
+    }
+
     /**
      * Updates game state information about new ants and food locations.
      * 
@@ -465,7 +703,7 @@ public class Ants {
      * @param tile location on the game map to be updated
      */
     public void update(Ilk ilk, Tile tile) {
-        map[tile.getRow()][tile.getCol()] = ilk;
+        setIlk(tile, ilk);
         switch (ilk) {
         case FOOD:
             foodTiles.add(tile);
@@ -486,21 +724,24 @@ public class Ants {
      * @param tile location on the game map to be updated
      */
     public void updateHills(int owner, Tile tile) {
-        if (owner > 0)
+        hillTurns[index(tile)] = turn;
+        if (owner > 0) {
+            myHills.remove(tile);
             enemyHills.add(tile);
-        else
+        } else {
+            enemyHills.remove(tile);
             myHills.add(tile);
+        }
     }
 
     /**
-     * Issues an order by sending it to the system output.
+     * Issues an order. Orders are sent to the system output all at once when the turn is
+     * finished, see {@link Bot#finishTurn()}.
      * 
      * @param myAnt map tile with my ant
      * @param direction direction in which to move my ant
      */
     public void issueOrder(Tile myAnt, Aim direction) {
-        Order order = new Order(myAnt, direction);
-        orders.add(order);
-        System.out.println(order);
+        orders.add(myAnt.getRow(), myAnt.getCol(), direction);
     }
 }
@@ -1,11 +1,18 @@
 package org.retardants.adt;
 
+import java.io.IOException;
+
+import org.retardants.Log;
+import org.retardants.TurnBudget;
+
 /**
  * Provides basic game state handling.
  */
 public abstract class Bot extends AbstractSystemInputParser {
     private Ants ants;
 
+    private TurnBudget budget;
+
     /**
      * {@inheritDoc}
      */
@@ -14,6 +21,19 @@ public abstract class Bot extends AbstractSystemInputParser {
             int attackRadius2, int spawnRadius2) {
         setAnts(new Ants(loadTime, turnTime, rows, cols, turns, viewRadius2, attackRadius2,
                 spawnRadius2));
+        ants.setTurnStartTime(System.currentTimeMillis());
+        // Keep a tenth of the turn, at least 10ms, for output and the engine's latency.
+        budget = new TurnBudget(turnTime, Math.min(turnTime, Math.max(10, turnTime / 10)));
+    }
+
+    /**
+     * Returns the time budget of the turns, started by {@link #beforeUpdate()} in its PARSE
+     * phase and ended once the orders are sent.
+     *
+     * @return time budget of the turns, or null before setup
+     */
+    public TurnBudget getBudget() {
+        return budget;
     }
 
     /**
@@ -39,16 +59,20 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void beforeUpdate() {
+        budget.startTurn();
+        budget.beginPhase(TurnBudget.Phase.PARSE);
         ants.setTurnStartTime(System.currentTimeMillis());
+        ants.nextTurn();
+        // Water and hills are remembered from turn to turn; razed hills are forgotten once
+        // seen, see Ants.setVision().
         ants.clearMyAnts();
         ants.clearEnemyAnts();
-        ants.clearMyHills();
-        ants.clearEnemyHills();
         ants.clearFood();
         ants.clearDeadAnts();
         ants.getOrders().clear();
-        ants.clearVision();
-        System.err.println("Remaining after beforeUpdate(): " + ants.getTimeRemaining());
+        if (Log.isDebug(Log.Subsystem.BOT)) {
+            Log.debug(Log.Subsystem.BOT, "Remaining after beforeUpdate(): " + ants.getTimeRemaining());
+        }
     }
 
     /**
@@ -56,7 +80,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addWater(int row, int col) {
-        ants.update(Ilk.WATER, new Tile(row, col));
+        ants.update(Ilk.WATER, ants.tileAt(row, col));
     }
 
     /**
@@ -64,7 +88,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addAnt(int row, int col, int owner) {
-        ants.update(owner > 0 ? Ilk.ENEMY_ANT : Ilk.MY_ANT, new Tile(row, col));
+        ants.update(owner > 0 ? Ilk.ENEMY_ANT : Ilk.MY_ANT, ants.tileAt(row, col));
     }
 
     /**
@@ -72,7 +96,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addFood(int row, int col) {
-        ants.update(Ilk.FOOD, new Tile(row, col));
+        ants.update(Ilk.FOOD, ants.tileAt(row, col));
     }
 
     /**
@@ -80,7 +104,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void removeAnt(int row, int col, int owner) {
-        ants.update(Ilk.DEAD, new Tile(row, col));
+        ants.update(Ilk.DEAD, ants.tileAt(row, col));
     }
 
     /**
@@ -88,7 +112,38 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addHill(int row, int col, int owner) {
-        ants.updateHills(owner, new Tile(row, col));
+        ants.updateHills(owner, ants.tileAt(row, col));
+    }
+
+    /**
+     * Sends every order issued this turn, followed by "go", in a single write, in the OUTPUT
+     * phase of the budget, and ends the turn of the budget. Spooled log
+     * messages are then written out if the turn overran its time, and dropped otherwise.
+     */
+    @Override
+    public void finishTurn() {
+        if (ants == null) {
+            super.finishTurn();
+            return;
+        }
+        if (budget.getPhase() != TurnBudget.Phase.OUTPUT) {
+            budget.beginPhase(TurnBudget.Phase.OUTPUT);
+        }
+        try {
+            ants.getOrders().flush(System.out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        budget.endTurn();
+        if (Log.isSpooling()) {
+            int remaining = ants.getTimeRemaining();
+            if (remaining < 0) {
+                Log.error(Log.Subsystem.BOT, "Turn overran by " + -remaining + "ms");
+                Log.dumpSpool();
+            } else {
+                Log.clearSpool();
+            }
+        }
     }
 
     /**
@@ -96,8 +151,13 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void afterUpdate() {
-        System.err.println("Remaining after update(): " + ants.getTimeRemaining());
+        if (Log.isDebug(Log.Subsystem.BOT)) {
+            Log.debug(Log.Subsystem.BOT, "Remaining after update(): " + ants.getTimeRemaining());
+        }
+        budget.beginPhase(TurnBudget.Phase.VISION);
         ants.setVision();
-        System.err.println("Remaining after afterUpdate(): " + ants.getTimeRemaining());
+        if (Log.isDebug(Log.Subsystem.BOT)) {
+            Log.debug(Log.Subsystem.BOT, "Remaining after afterUpdate(): " + ants.getTimeRemaining());
+        }
     }
 }
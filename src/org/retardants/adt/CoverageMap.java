@@ -0,0 +1,156 @@
+package org.retardants.adt;
+
+/**
+ * Counts, for every location, how many ants cover it with a Stencil, such as
+ * their view or their attack range, and keeps the counts from turn to turn.
+ *
+ * A turn only touches the stencils of the ants that moved: an ant arriving
+ * at a location adds its stencil, an ant leaving one takes it away, and an
+ * ant standing still costs nothing. Ant positions are stamped with the update
+ * that saw them, so nothing is cleared between turns either.
+ *
+ * Each update also hands back its delta: the locations that became covered
+ * and the ones that stopped being covered. Locations are flat indices, see
+ * {@link Ants#index(int, int)}.
+ */
+public class CoverageMap {
+
+    /* Locations covered by an ant, and room to list them */
+    private final Stencil stencil;
+    private final int[] covered;
+
+    /* Number of ants covering every location */
+    private final int[] coverage;
+
+    /* Update in which an ant was last at every location */
+    private final int[] antStamps;
+    private int stamp = 1;
+
+    /* Locations of the ants in the last update, and spare room for the next */
+    private int[] ants = new int[64];
+    private int antCount = 0;
+    private int[] nextAnts = new int[64];
+
+    private int[] gained;
+    private int gainedCount = 0;
+    private int[] lost;
+    private int lostCount = 0;
+
+    /**
+     * @param rows game map height
+     * @param cols game map width
+     * @param stencil locations covered by an ant, around its location
+     */
+    public CoverageMap(int rows, int cols, Stencil stencil) {
+        this.stencil = stencil;
+        covered = new int[stencil.size()];
+        coverage = new int[rows * cols];
+        antStamps = new int[rows * cols];
+        gained = new int[rows * cols];
+        lost = new int[rows * cols];
+    }
+
+    /**
+     * Moves the stencils to the given locations of the ants, and records
+     * which locations became covered and which stopped being covered.
+     *
+     * @param cells flat indices of every ant
+     * @param count number of ants in cells
+     */
+    public void update(int[] cells, int count) {
+        stamp++;
+        gainedCount = 0;
+        lostCount = 0;
+        if (nextAnts.length < count) {
+            nextAnts = new int[Math.max(count, 2 * nextAnts.length)];
+        }
+
+        // Add the stencils of arriving ants first, so that a location covered
+        // both before and after the update never counts as lost.
+        int nextCount = 0;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            int last = antStamps[cell];
+            if (last == stamp) {
+                continue; // a duplicate
+            }
+            antStamps[cell] = stamp;
+            nextAnts[nextCount++] = cell;
+            if (last != stamp - 1) {
+                cover(cell, 1);
+            }
+        }
+        for (int i = 0; i < antCount; i++) {
+            int cell = ants[i];
+            if (antStamps[cell] != stamp) {
+                cover(cell, -1);
+            }
+        }
+
+        int[] swap = ants;
+        ants = nextAnts;
+        antCount = nextCount;
+        nextAnts = swap;
+    }
+
+    /*
+     * Adds delta to the coverage of every location seen from cell.
+     */
+    private void cover(int cell, int delta) {
+        int count = stencil.around(cell, covered);
+        for (int k = 0; k < count; k++) {
+            int location = covered[k];
+            int before = coverage[location];
+            coverage[location] = before + delta;
+            if (before == 0 && delta > 0) {
+                gained[gainedCount++] = location;
+            } else if (before == 1 && delta < 0) {
+                lost[lostCount++] = location;
+            }
+        }
+    }
+
+    /**
+     * @return the number of ants covering the location with flat index cell
+     */
+    public int getCoverage(int cell) {
+        return coverage[cell];
+    }
+
+    /**
+     * Returns the locations that became covered in the last update. The
+     * array is reused by the next update.
+     *
+     * @return flat indices of the locations, the first getGainedCount() of
+     *         them valid
+     */
+    public int[] getGained() {
+        return gained;
+    }
+
+    public int getGainedCount() {
+        return gainedCount;
+    }
+
+    /**
+     * Returns the locations that stopped being covered in the last update.
+     * The array is reused by the next update.
+     *
+     * @return flat indices of the locations, the first getLostCount() of
+     *         them valid
+     */
+    public int[] getLost() {
+        return lost;
+    }
+
+    public int getLostCount() {
+        return lostCount;
+    }
+
+    /**
+     * @return the number of locations covered by a single ant
+     */
+    public int getStencilSize() {
+        return stencil.size();
+    }
+}
@@ -0,0 +1,272 @@
+package org.retardants.adt;
+
+import java.util.Arrays;
+
+/**
+ * Collects the moves my ants intend to make during a turn, and settles them
+ * all at once before any order is issued.
+ *
+ * Every intent is an ant, a direction (or none, to stay) and a score. An ant
+ * may have any number of intents, typically one per legal move. Intents are
+ * taken from the highest score down, each ant getting its first intent
+ * whose destination no earlier intent took, or was reserved; ties go to the
+ * intent proposed first. An ant may intend to move onto another ant of mine, which is fine
+ * as long as that one moves away. So once every intent is taken or refused:
+ *
+ * <ul>
+ * <li>Two ants swapping locations both stay instead, which is the same
+ *     outcome without the orders.</li>
+ * <li>Every ant that stays, for want of an intent or by choice, keeps its
+ *     location: an ant moving onto it stays too, and so on back along the
+ *     chain of ants moving into each other.</li>
+ * </ul>
+ *
+ * Sorting the intents takes O(n log n), and the rest O(n) plus a scan of the
+ * bitset of my ants. Intents live in primitive arrays, and per location
+ * state in arrays stamped with the turn they belong to, so nothing is
+ * cleared between turns.
+ */
+public class MoveResolver {
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final Ants ants;
+
+    /* Intents of the turn: ant location, destination, and sort key */
+    private int[] intentAnts = new int[64];
+    private int[] intentDests = new int[64];
+    private long[] keys = new long[64];
+    private int count = 0;
+
+    /* Locations of ants that intend to move, valid iff intending matches */
+    private final int[] intending;
+    private int turn = 0;
+
+    /* Locations of ants with any intent, valid iff proposed matches */
+    private final int[] proposed;
+
+    /* Locations no ant may move to, valid iff reserved matches */
+    private final int[] reserved;
+
+    /* Destination of every ant, valid iff moved matches */
+    private final int[] destination;
+    private final int[] moved;
+
+    /* Ant taking every location, valid iff taken matches */
+    private final int[] taker;
+    private final int[] taken;
+    private int generation = 0;
+
+    /* Chains to unwind */
+    private int[] stack = new int[64];
+
+    /**
+     * Constructs a new MoveResolver for the map of <code>ants</code>.
+     */
+    public MoveResolver(Ants ants) {
+        int size = ants.getRows() * ants.getCols();
+        this.ants = ants;
+        this.intending = new int[size];
+        this.proposed = new int[size];
+        this.reserved = new int[size];
+        this.destination = new int[size];
+        this.moved = new int[size];
+        this.taker = new int[size];
+        this.taken = new int[size];
+    }
+
+    /**
+     * Forgets every intent, to start a new turn.
+     */
+    public void clear() {
+        count = 0;
+        if (++turn == 0) {
+            Arrays.fill(intending, 0);
+            Arrays.fill(proposed, 0);
+            Arrays.fill(reserved, 0);
+            turn = 1;
+        }
+    }
+
+    /**
+     * @return whether the ant of mine at <code>antCell</code> intends to
+     *         move since the latest clear()
+     */
+    public boolean isMoving(int antCell) {
+        return intending[antCell] == turn;
+    }
+
+    /**
+     * @return whether the ant of mine at <code>antCell</code> has any
+     *         intent since the latest clear()
+     */
+    public boolean hasIntents(int antCell) {
+        return proposed[antCell] == turn;
+    }
+
+    /**
+     * Keeps every ant from moving to <code>cell</code> until the next
+     * clear(). An ant standing there may still stay.
+     */
+    public void reserve(int cell) {
+        reserved[cell] = turn;
+    }
+
+    /**
+     * @return the number of intents proposed since the latest clear()
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Proposes that the ant of mine at <code>antCell</code> moves in
+     * <code>direction</code>, or stays if it is null. The destination may
+     * hold an ant of mine, but no water, food or enemy ant.
+     *
+     * @requires antCell holds an ant of mine
+     * @return false, proposing nothing, iff the destination is blocked
+     */
+    public boolean propose(int antCell, Aim direction, int score) {
+        int dest = direction == null
+                ? antCell
+                : ants.getNeighbors()[antCell * 4 + direction.ordinal()];
+        if (dest != antCell && ! ants.isUnoccupied(dest) && ants.getIlk(dest) != Ilk.MY_ANT) {
+            return false;
+        }
+        if (count == keys.length) {
+            intentAnts = Arrays.copyOf(intentAnts, 2 * count);
+            intentDests = Arrays.copyOf(intentDests, 2 * count);
+            keys = Arrays.copyOf(keys, 2 * count);
+        }
+        if (dest != antCell) {
+            intending[antCell] = turn;
+        }
+        proposed[antCell] = turn;
+        intentAnts[count] = antCell;
+        intentDests[count] = dest;
+        // Ascending keys: highest score first, then first proposed.
+        keys[count] = ((long)-score << 32) | count;
+        count++;
+        return true;
+    }
+
+    /**
+     * Settles the intents proposed since the latest clear(). The outcome is
+     * given by getDestination().
+     *
+     * @return the number of ants that move
+     */
+    public int resolve() {
+        if (++generation == 0) {
+            Arrays.fill(moved, 0);
+            Arrays.fill(taken, 0);
+            generation = 1;
+        }
+        int stamp = generation;
+
+        Arrays.sort(keys, 0, count);
+        for (int k = 0; k < count; k++) {
+            int intent = (int)keys[k];
+            int ant = intentAnts[intent];
+            int dest = intentDests[intent];
+            if (moved[ant] == stamp || taken[dest] == stamp
+                    || (dest != ant && reserved[dest] == turn)) {
+                continue;
+            }
+            moved[ant] = stamp;
+            destination[ant] = dest;
+            taken[dest] = stamp;
+            taker[dest] = ant;
+        }
+
+        // Swaps become stays, and stays take their own locations back.
+        long[] mine = ants.getLayer(Ilk.MY_ANT);
+        int moves = 0;
+        for (int word = 0; word < mine.length; word++) {
+            for (long bits = mine[word]; bits != 0; bits &= bits - 1) {
+                int ant = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (moved[ant] != stamp) {
+                    moved[ant] = stamp;
+                    destination[ant] = ant;
+                }
+                int dest = destination[ant];
+                if (dest != ant && moved[dest] == stamp && destination[dest] == ant) {
+                    destination[ant] = ant;
+                    destination[dest] = dest;
+                    taker[ant] = ant;
+                    taker[dest] = dest;
+                }
+                if (destination[ant] == ant) {
+                    stay(ant, stamp);
+                }
+            }
+        }
+        for (int word = 0; word < mine.length; word++) {
+            for (long bits = mine[word]; bits != 0; bits &= bits - 1) {
+                int ant = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (destination[ant] != ant) {
+                    moves++;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /*
+     * Keeps the ant at its location, sending back whichever ant was moving
+     * there, and whichever was moving onto that one, and so on.
+     */
+    private void stay(int ant, int stamp) {
+        int top = 0;
+        stack[top++] = ant;
+        while (top > 0) {
+            int cell = stack[--top];
+            destination[cell] = cell;
+            if (taken[cell] == stamp && taker[cell] != cell) {
+                int other = taker[cell];
+                if (destination[other] != other) {
+                    taken[destination[other]] = 0;
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    }
+                    stack[top++] = other;
+                }
+            }
+            taken[cell] = stamp;
+            taker[cell] = cell;
+        }
+    }
+
+    /**
+     * @requires resolve() was called after the latest change of the ants,
+     *           and antCell holds an ant of mine
+     * @return the location the ant at <code>antCell</code> ends up at
+     */
+    public int getDestination(int antCell) {
+        return destination[antCell];
+    }
+
+    /**
+     * Issues the order of every ant that moves after the latest resolve().
+     */
+    public void issueOrders() {
+        long[] mine = ants.getLayer(Ilk.MY_ANT);
+        int[] neighbors = ants.getNeighbors();
+        for (int word = 0; word < mine.length; word++) {
+            for (long bits = mine[word]; bits != 0; bits &= bits - 1) {
+                int ant = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int dest = destination[ant];
+                if (dest == ant) {
+                    continue;
+                }
+                for (int aim = 0; aim < 4; aim++) {
+                    if (neighbors[ant * 4 + aim] == dest) {
+                        ants.issueOrder(ants.tileAt(ant), AIMS[aim]);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.retardants.adt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Collects the orders of a turn, already encoded in the text of the game
+ * protocol ("o row col direction"), in a byte buffer reused from turn to
+ * turn, so that a whole turn is sent with a single write.
+ */
+public class OrderBuffer {
+
+    /* "o " + two numbers of up to 10 digits + " x" + newline */
+    private static final int MAX_ORDER_LENGTH = 28;
+
+    private static final byte[] GO = { 'g', 'o', '\n' };
+
+    private byte[] buffer = new byte[4096];
+
+    private int length = 0;
+
+    private int count = 0;
+
+    /**
+     * Adds an order to move the ant at (row, col) towards direction.
+     *
+     * @param row row of my ant
+     * @param col column of my ant
+     * @param direction direction in which to move my ant
+     */
+    public void add(int row, int col, Aim direction) {
+        if (length + MAX_ORDER_LENGTH > buffer.length) {
+            byte[] larger = new byte[2 * buffer.length];
+            System.arraycopy(buffer, 0, larger, 0, length);
+            buffer = larger;
+        }
+        buffer[length++] = 'o';
+        buffer[length++] = ' ';
+        appendNumber(row);
+        buffer[length++] = ' ';
+        appendNumber(col);
+        buffer[length++] = ' ';
+        buffer[length++] = (byte)direction.getSymbol();
+        buffer[length++] = '\n';
+        count++;
+    }
+
+    private void appendNumber(int value) {
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Returns the number of orders added since the last call to clear().
+     *
+     * @return the number of orders
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Forgets every order added so far.
+     */
+    public void clear() {
+        length = 0;
+        count = 0;
+    }
+
+    /**
+     * Writes every order followed by "go" to out in a single write, flushes
+     * out and clears this buffer.
+     *
+     * @param out stream to write to
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush(OutputStream out) throws IOException {
+        if (length + GO.length > buffer.length) {
+            byte[] larger = new byte[length + GO.length];
+            System.arraycopy(buffer, 0, larger, 0, length);
+            buffer = larger;
+        }
+        System.arraycopy(GO, 0, buffer, length, GO.length);
+        out.write(buffer, 0, length + GO.length);
+        out.flush();
+        clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+}
@@ -0,0 +1,114 @@
+package org.retardants.adt;
+
+/**
+ * The locations within a squared radius of a location, such as the view or
+ * the attack range of an ant, on a map that wraps around.
+ *
+ * The offsets are computed once, and the wrapped row and column of every
+ * location plus every offset are looked up in two small tables, so listing
+ * the locations around one costs no division or branch per location.
+ * Locations are flat indices, see {@link Ants#index(int, int)}.
+ */
+public class Stencil {
+
+    private final int cols;
+
+    /* Offsets within the radius, relative to the center */
+    private final int[] rowOffsets;
+    private final int[] colOffsets;
+
+    /* Wrapped row base and column of row/col + offset + reach */
+    private final int[] rowBases;
+    private final int[] wrappedCols;
+    private final int reach;
+
+    /**
+     * @param rows game map height
+     * @param cols game map width
+     * @param radius2 squared radius of the stencil
+     */
+    public Stencil(int rows, int cols, int radius2) {
+        this(rows, cols, radius2, false);
+    }
+
+    /**
+     * @param rows game map height
+     * @param cols game map width
+     * @param radius2 squared radius of the stencil
+     * @param moved whether to also include every location within radius2 of
+     *        a neighbor of the center, ie. the range after one step
+     */
+    public Stencil(int rows, int cols, int radius2, boolean moved) {
+        this.cols = cols;
+        int radius = (int)Math.sqrt(radius2);
+        reach = radius + (moved ? 1 : 0);
+        int count = 0;
+        for (int row = -reach; row <= reach; ++row) {
+            for (int col = -reach; col <= reach; ++col) {
+                if (within(row, col, radius2, moved)) {
+                    count++;
+                }
+            }
+        }
+        rowOffsets = new int[count];
+        colOffsets = new int[count];
+        count = 0;
+        for (int row = -reach; row <= reach; ++row) {
+            for (int col = -reach; col <= reach; ++col) {
+                if (within(row, col, radius2, moved)) {
+                    rowOffsets[count] = row;
+                    colOffsets[count] = col;
+                    count++;
+                }
+            }
+        }
+        rowBases = new int[rows + 2 * reach];
+        for (int i = 0; i < rowBases.length; i++) {
+            rowBases[i] = (((i - reach) % rows + rows) % rows) * cols;
+        }
+        wrappedCols = new int[cols + 2 * reach];
+        for (int i = 0; i < wrappedCols.length; i++) {
+            wrappedCols[i] = ((i - reach) % cols + cols) % cols;
+        }
+    }
+
+    private static boolean within(int row, int col, int radius2, boolean moved) {
+        if (row * row + col * col <= radius2) {
+            return true;
+        }
+        if (moved) {
+            for (Aim aim : Aim.values()) {
+                int r = row - aim.getRowDelta();
+                int c = col - aim.getColDelta();
+                if (r * r + c * c <= radius2) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of locations in the stencil
+     */
+    public int size() {
+        return rowOffsets.length;
+    }
+
+    /**
+     * Lists the locations of the stencil centered on a location. On a map
+     * smaller than the stencil, some locations are listed more than once.
+     *
+     * @param cell flat index of the center
+     * @param out array of at least size() entries to fill
+     * @return size()
+     */
+    public int around(int cell, int[] out) {
+        int row = cell / cols + reach;
+        int col = cell % cols + reach;
+        for (int k = 0; k < rowOffsets.length; k++) {
+            out[k] = rowBases[row + rowOffsets[k]] + wrappedCols[col + colOffsets[k]];
+        }
+        return rowOffsets.length;
+    }
+}
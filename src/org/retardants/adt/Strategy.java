@@ -4,12 +4,16 @@ public enum Strategy {
     
     BATTLE_SHORTEST_EUCLIDEAN_ROUTE,
     BATTLE_DIJKSTRAS_TILE_PATH,
+    BATTLE_DISTANCE_FIELD, // one BFS from all enemy hills
     
     FOOD_DIFFUSION_ONE_ANT_PER_FOOD, // one ant per food
     FOOD_DIFFUSION_ALL_ANTS, // all ants go uphill
     FOOD_SHORTEST_EUCLIDEAN_ROUTE, // one ant per food
+    FOOD_ASSIGNMENT, // min-cost matching of ants to food, by steps around water
+    FOOD_SIMULTANEOUS_BFS, // each food claims the first free ant its frontier reaches
     
     EXPLORATION_NEAREST_UNSEEN,
-    EXPLORATION_LEAST_VISITED;
+    EXPLORATION_LEAST_VISITED,
+    EXPLORATION_DIFFUSION; // climb the unexplored channel of the diffusion map
 
 }
@@ -9,7 +9,9 @@ public class Tile implements Comparable<Tile> {
     private final int col;
 
     /**
-     * Creates new {@link Tile} object.
+     * Creates new {@link Tile} object. Locations on the game map should be
+     * obtained from {@link Ants#tileAt(int, int)} instead, which returns a
+     * shared instance.
      * 
      * @param row row index
      * @param col column index
@@ -58,6 +60,9 @@ public class Tile implements Comparable<Tile> {
      */
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         boolean result = false;
         if (o instanceof Tile) {
             Tile tile = (Tile)o;
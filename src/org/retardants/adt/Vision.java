@@ -0,0 +1,32 @@
+package org.retardants.adt;
+
+/**
+ * Keeps track of the locations my ants can see, from turn to turn: the
+ * CoverageMap of their view. Each update hands back the locations that
+ * became visible and the ones that stopped being visible.
+ */
+public class Vision extends CoverageMap {
+
+    /**
+     * @param rows game map height
+     * @param cols game map width
+     * @param viewRadius2 squared view radius of each ant
+     */
+    public Vision(int rows, int cols, int viewRadius2) {
+        super(rows, cols, new Stencil(rows, cols, viewRadius2));
+    }
+
+    /**
+     * @return whether any of my ants sees the location with flat index cell
+     */
+    public boolean isVisible(int cell) {
+        return getCoverage(cell) > 0;
+    }
+
+    /**
+     * @return the number of locations seen by a single ant
+     */
+    public int getViewSize() {
+        return getStencilSize();
+    }
+}
@@ -0,0 +1,194 @@
+package org.retardants.combat;
+
+import java.util.Arrays;
+
+/**
+ * Partitions my ants and enemy ants into independent battles.
+ *
+ * An ant of mine and an enemy are linked when both could be within attack
+ * range of each other after one step each; the battles are the connected
+ * components of these links, found with union-find. Ants with no enemy
+ * within reach belong to no battle. Since no ant of one battle can reach an
+ * ant of another by the next turn, each battle can be searched on its own.
+ */
+public class BattleClusters {
+
+    private final int rows;
+    private final int cols;
+
+    /* Squared distance within which two opposing ants may meet in battle */
+    private final int engage2;
+
+    /* Union-find over my ants, then enemy ants, and the battle of every root */
+    private int[] parent = new int[0];
+    private boolean[] engaged = new boolean[0];
+    private int[] battleOfRoot = new int[0];
+
+    /* Battle of every ant of mine and every enemy, -1 if none */
+    private int[] myBattle = new int[0];
+    private int[] enemyBattle = new int[0];
+
+    /* Ants of every battle, as consecutive ranges */
+    private int[] myStart = new int[1];
+    private int[] myAnts = new int[0];
+    private int[] enemyStart = new int[1];
+    private int[] enemyAnts = new int[0];
+    private int battles = 0;
+
+    /**
+     * @param rows game map height
+     * @param cols game map width
+     * @param attackRadius2 squared attack radius of each ant
+     */
+    public BattleClusters(int rows, int cols, int attackRadius2) {
+        this.rows = rows;
+        this.cols = cols;
+        double reach = Math.sqrt(attackRadius2) + 2;
+        this.engage2 = (int)(reach * reach);
+    }
+
+    private int distance2(int cell1, int cell2) {
+        int rowDelta = Math.abs(cell1 / cols - cell2 / cols);
+        int colDelta = Math.abs(cell1 % cols - cell2 % cols);
+        rowDelta = Math.min(rowDelta, rows - rowDelta);
+        colDelta = Math.min(colDelta, cols - colDelta);
+        return rowDelta * rowDelta + colDelta * colDelta;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Partitions the first <code>myCount</code> ants of <code>myCells</code>
+     * and the first <code>enemyCount</code> of <code>enemyCells</code>.
+     *
+     * @return the number of battles
+     */
+    public int partition(int[] myCells, int myCount, int[] enemyCells, int enemyCount) {
+        int total = myCount + enemyCount;
+        if (parent.length < total) {
+            parent = new int[2 * total];
+            engaged = new boolean[2 * total];
+            battleOfRoot = new int[2 * total];
+            myBattle = new int[2 * total];
+            enemyBattle = new int[2 * total];
+            myAnts = new int[2 * total];
+            enemyAnts = new int[2 * total];
+            myStart = new int[2 * total + 1];
+            enemyStart = new int[2 * total + 1];
+        }
+        for (int i = 0; i < total; i++) {
+            parent[i] = i;
+        }
+        Arrays.fill(engaged, 0, total, false);
+        for (int i = 0; i < myCount; i++) {
+            for (int j = 0; j < enemyCount; j++) {
+                if (distance2(myCells[i], enemyCells[j]) <= engage2) {
+                    engaged[i] = true;
+                    engaged[myCount + j] = true;
+                    parent[find(i)] = find(myCount + j);
+                }
+            }
+        }
+
+        // Number the battles by their roots, and count their ants.
+        Arrays.fill(battleOfRoot, 0, total, -1);
+        battles = 0;
+        for (int i = 0; i < total; i++) {
+            int battle = -1;
+            if (engaged[i]) {
+                int root = find(i);
+                if (battleOfRoot[root] < 0) {
+                    battleOfRoot[root] = battles++;
+                }
+                battle = battleOfRoot[root];
+            }
+            if (i < myCount) {
+                myBattle[i] = battle;
+            } else {
+                enemyBattle[i - myCount] = battle;
+            }
+        }
+        fill(myBattle, myCount, myStart, myAnts);
+        fill(enemyBattle, enemyCount, enemyStart, enemyAnts);
+        return battles;
+    }
+
+    /*
+     * Lists the ants of every battle in consecutive ranges of ants, starting
+     * at start[battle].
+     */
+    private void fill(int[] battleOf, int count, int[] start, int[] ants) {
+        Arrays.fill(start, 0, battles + 1, 0);
+        for (int i = 0; i < count; i++) {
+            if (battleOf[i] >= 0) {
+                start[battleOf[i] + 1]++;
+            }
+        }
+        for (int b = 0; b < battles; b++) {
+            start[b + 1] += start[b];
+        }
+        int[] next = Arrays.copyOf(start, battles);
+        for (int i = 0; i < count; i++) {
+            if (battleOf[i] >= 0) {
+                ants[next[battleOf[i]]++] = i;
+            }
+        }
+    }
+
+    /**
+     * @return the number of battles found by the latest partition()
+     */
+    public int getBattles() {
+        return battles;
+    }
+
+    /**
+     * @return the battle of my ant <code>ant</code>, or -1 if none
+     */
+    public int getBattle(int ant) {
+        return myBattle[ant];
+    }
+
+    /**
+     * @return the battle of enemy ant <code>enemy</code>, or -1 if none
+     */
+    public int getEnemyBattle(int enemy) {
+        return enemyBattle[enemy];
+    }
+
+    /**
+     * @return the number of my ants in <code>battle</code>
+     */
+    public int getMyCount(int battle) {
+        return myStart[battle + 1] - myStart[battle];
+    }
+
+    /**
+     * @requires 0 <= k < getMyCount(battle)
+     * @return the number of the k-th ant of mine in <code>battle</code>
+     */
+    public int getMyAnt(int battle, int k) {
+        return myAnts[myStart[battle] + k];
+    }
+
+    /**
+     * @return the number of enemy ants in <code>battle</code>
+     */
+    public int getEnemyCount(int battle) {
+        return enemyStart[battle + 1] - enemyStart[battle];
+    }
+
+    /**
+     * @requires 0 <= k < getEnemyCount(battle)
+     * @return the number of the k-th enemy ant in <code>battle</code>
+     */
+    public int getEnemyAnt(int battle, int k) {
+        return enemyAnts[enemyStart[battle] + k];
+    }
+}
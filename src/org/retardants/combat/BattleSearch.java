@@ -0,0 +1,432 @@
+package org.retardants.combat;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+
+/**
+ * A BattleSearch picks the moves of my ants in every battle of the turn.
+ *
+ * The ants are first split into independent battles by {@link BattleClusters}.
+ * Within a battle, the search looks for the moves of my ants whose worst
+ * outcome, over a pool of enemy replies, is best; an outcome is scored by
+ * {@link CombatSimulator} as the enemies killed against my ants lost, the
+ * latter weighted a little more. It alternates two steps until the deadline:
+ *
+ * <ul>
+ * <li>My ants improve their moves one ant at a time, keeping any change that
+ *     raises the worst outcome. A move is scored against the pool only until
+ *     some reply brings it down to the best so far, so most candidates are
+ *     cut off after a reply or two, as in alpha-beta.</li>
+ * <li>The enemies, one ant at a time, look for the best reply to my moves.
+ *     If it does better than every reply in the pool, it joins the pool;
+ *     otherwise my moves hold against every reply found and the search
+ *     stops.</li>
+ * </ul>
+ *
+ * The pool starts with the enemies standing still and with each group move
+ * of all enemies in one direction. Moves are made and undone in place on
+ * the arrays of locations, so no state is copied while searching.
+ *
+ * With a parallelism above one, battles are spread over a pool of worker
+ * threads, each with its own simulator and scratch arrays; every worker
+ * splits its share of the time evenly between its battles.
+ */
+public class BattleSearch {
+
+    private static final Aim[] AIMS = Aim.values();
+
+    /* Moves of an ant: stay, then one per aim; -1 where it cannot go */
+    private static final int MOVES = 5;
+
+    /* Score of every enemy killed, and of every ant of mine lost */
+    public static final int KILL = 10;
+    public static final int LOSS = 12;
+
+    /* Largest number of enemy replies searched against */
+    private static final int MAX_REPLIES = 32;
+
+    private final Ants ants;
+    private final BattleClusters clusters;
+    private final int rows;
+    private final int cols;
+    private final int attackRadius2;
+
+    /* Destination of every move of every ant, at ant * MOVES + move */
+    private int[] myMoves = new int[0];
+    private int[] enemyMoves = new int[0];
+
+    /* Result: the move of every ant of mine, and the battles that matter */
+    private int[] chosen = new int[0];
+    private boolean[] engaged = new boolean[0];
+    private int battles;
+
+    private Searcher[] searchers;
+    private ForkJoinPool pool;
+
+    /**
+     * Constructs a new BattleSearch for the map of <code>ants</code>,
+     * searching battles on <code>parallelism</code> threads.
+     */
+    public BattleSearch(Ants ants, int parallelism) {
+        this.ants = ants;
+        this.rows = ants.getRows();
+        this.cols = ants.getCols();
+        this.attackRadius2 = ants.getAttackRadius2();
+        this.clusters = new BattleClusters(rows, cols, attackRadius2);
+        setParallelism(parallelism);
+    }
+
+    /**
+     * Set how many threads search battles. With 1 every battle is searched
+     * on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        parallelism = Math.max(1, parallelism);
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        searchers = new Searcher[parallelism];
+        for (int w = 0; w < parallelism; w++) {
+            searchers[w] = new Searcher();
+        }
+    }
+
+    public int getParallelism() {
+        return searchers.length;
+    }
+
+    /**
+     * Searches the moves of the first <code>myCount</code> ants of
+     * <code>myCells</code> against the first <code>enemyCount</code> enemy
+     * ants of <code>enemyCells</code>. My ants with <code>fixed[i]</code>
+     * already have their orders, and are given at their destinations.
+     *
+     * @requires no location is listed twice in myCells or in enemyCells
+     * @param deadline System.nanoTime() by which every battle is searched
+     * @return the number of battles
+     */
+    public int search(int[] myCells, boolean[] fixed, int myCount,
+            int[] enemyCells, int enemyCount, long deadline) {
+        ensureCapacity(myCount, enemyCount);
+        battles = clusters.partition(myCells, myCount, enemyCells, enemyCount);
+        Arrays.fill(chosen, 0, myCount, 0);
+        Arrays.fill(engaged, 0, battles, false);
+        for (int i = 0; i < myCount; i++) {
+            if (clusters.getBattle(i) >= 0) {
+                listMoves(myCells[i], fixed[i], myMoves, i);
+            }
+        }
+        for (int j = 0; j < enemyCount; j++) {
+            if (clusters.getEnemyBattle(j) >= 0) {
+                listMoves(enemyCells[j], false, enemyMoves, j);
+            }
+        }
+        if (battles == 0) {
+            return 0;
+        }
+
+        int workers = Math.min(searchers.length, battles);
+        if (pool == null || workers == 1) {
+            searchers[0].searchShare(0, 1, deadline);
+        } else {
+            pool.invoke(new Share(0, workers, workers, deadline));
+        }
+        return battles;
+    }
+
+    /*
+     * Lists where the ant at cell can go: nowhere but its own location if
+     * fixed, otherwise any neighbor without water or food.
+     */
+    private void listMoves(int cell, boolean fixed, int[] moves, int ant) {
+        int[] neighbors = ants.getNeighbors();
+        moves[ant * MOVES] = cell;
+        for (int aim = 0; aim < 4; aim++) {
+            int next = neighbors[cell * 4 + aim];
+            boolean open = ! fixed && ants.isPassable(next) && ants.getIlk(next) != Ilk.FOOD;
+            moves[ant * MOVES + 1 + aim] = open ? next : -1;
+        }
+    }
+
+    private void ensureCapacity(int myCount, int enemyCount) {
+        if (chosen.length < myCount) {
+            chosen = new int[2 * myCount];
+            myMoves = new int[2 * myCount * MOVES];
+        }
+        if (enemyMoves.length < enemyCount * MOVES) {
+            enemyMoves = new int[2 * enemyCount * MOVES];
+        }
+        // There are never more battles than ants of mine.
+        if (engaged.length < myCount) {
+            engaged = new boolean[2 * myCount];
+        }
+    }
+
+    /**
+     * @return the battles found by the latest search()
+     */
+    public BattleClusters getClusters() {
+        return clusters;
+    }
+
+    /**
+     * @requires 0 <= ant < the myCount of the latest search()
+     * @return whether <code>ant</code> is in a battle where some ant could
+     *         die, so that its move from getDirection() matters
+     */
+    public boolean isEngaged(int ant) {
+        int battle = clusters.getBattle(ant);
+        return battle >= 0 && engaged[battle];
+    }
+
+    /**
+     * @requires isEngaged(ant)
+     * @return the direction <code>ant</code> should move in, or null if it
+     *         should stay
+     */
+    public Aim getDirection(int ant) {
+        int move = chosen[ant];
+        return move == 0 ? null : AIMS[move - 1];
+    }
+
+    /*
+     * Searches the battles from start to end of a share of workers, one
+     * worker per share in the end.
+     */
+    private class Share extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int workers;
+        private final long deadline;
+
+        Share(int start, int end, int workers, long deadline) {
+            this.start = start;
+            this.end = end;
+            this.workers = workers;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                searchers[start].searchShare(start, workers, deadline);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new Share(start, middle, workers, deadline),
+                    new Share(middle, end, workers, deadline));
+        }
+    }
+
+    /*
+     * The search of one battle at a time, on one thread. Ant i of the battle
+     * is ant ids[i] of the search, and stands at mine[i] in the state being
+     * searched; replies hold the locations of the enemies of the battle.
+     */
+    private class Searcher {
+
+        private final CombatSimulator combat = new CombatSimulator(rows, cols, attackRadius2);
+
+        private int[] ids = new int[0];
+        private int[] mine = new int[0];
+        private int[] enemyIds = new int[0];
+        private int[] reply = new int[0];
+        private int[][] replies = new int[MAX_REPLIES][0];
+        private int replyCount;
+        private int myCount;
+        private int enemyCount;
+        private boolean deaths;
+
+        /*
+         * Searches every workers-th battle starting with the first one,
+         * splitting the time left evenly between those not yet searched.
+         */
+        void searchShare(int first, int workers, long deadline) {
+            int left = (battles - first + workers - 1) / workers;
+            for (int battle = first; battle < battles; battle += workers) {
+                long now = System.nanoTime();
+                searchBattle(battle, now + Math.max(0, deadline - now) / left--);
+            }
+        }
+
+        void searchBattle(int battle, long deadline) {
+            load(battle);
+            deaths = false;
+
+            // Start with the enemies standing, and moving all one way.
+            replyCount = 0;
+            for (int move = 0; move < MOVES; move++) {
+                for (int j = 0; j < enemyCount; j++) {
+                    int dest = enemyMoves[enemyIds[j] * MOVES + move];
+                    reply[j] = dest >= 0 ? dest : enemyMoves[enemyIds[j] * MOVES];
+                }
+                addReply();
+            }
+
+            while (true) {
+                int value = improve(deadline);
+                if (System.nanoTime() > deadline || replyCount == MAX_REPLIES) {
+                    break;
+                }
+                if (bestReply(deadline) >= value) {
+                    break; // my moves hold against the best reply found
+                }
+                addReply();
+            }
+
+            for (int i = 0; i < myCount; i++) {
+                int ant = ids[i];
+                for (int move = 0; move < MOVES; move++) {
+                    if (myMoves[ant * MOVES + move] == mine[i]) {
+                        chosen[ant] = move;
+                        break;
+                    }
+                }
+            }
+            engaged[battle] = deaths;
+        }
+
+        private void load(int battle) {
+            myCount = clusters.getMyCount(battle);
+            enemyCount = clusters.getEnemyCount(battle);
+            if (ids.length < myCount) {
+                ids = new int[2 * myCount];
+                mine = new int[2 * myCount];
+            }
+            if (enemyIds.length < enemyCount) {
+                enemyIds = new int[2 * enemyCount];
+                reply = new int[2 * enemyCount];
+            }
+            for (int i = 0; i < myCount; i++) {
+                ids[i] = clusters.getMyAnt(battle, i);
+                mine[i] = myMoves[ids[i] * MOVES];
+            }
+            for (int j = 0; j < enemyCount; j++) {
+                enemyIds[j] = clusters.getEnemyAnt(battle, j);
+            }
+        }
+
+        private void addReply() {
+            if (replies[replyCount].length < enemyCount) {
+                replies[replyCount] = new int[2 * enemyCount];
+            }
+            System.arraycopy(reply, 0, replies[replyCount++], 0, enemyCount);
+        }
+
+        private int score(int[] enemies) {
+            if (combat.fight(mine, myCount, enemies, enemyCount) > 0) {
+                deaths = true;
+            }
+            return KILL * combat.getEnemyDead() - LOSS * combat.getMyDead();
+        }
+
+        /*
+         * The worst score of my moves over the pool, or some score no
+         * larger than floor as soon as one is found.
+         */
+        private int worst(int floor) {
+            int min = Integer.MAX_VALUE;
+            for (int r = 0; r < replyCount; r++) {
+                min = Math.min(min, score(replies[r]));
+                if (min <= floor) {
+                    break;
+                }
+            }
+            return min;
+        }
+
+        /*
+         * Improves my moves one ant at a time until none improves the worst
+         * score over the pool, or the deadline passes, and returns that
+         * score. The deadline is checked before every ant, as one pass over
+         * a large battle may take long.
+         */
+        private int improve(long deadline) {
+            int value = worst(Integer.MIN_VALUE);
+            boolean changed = true;
+            while (changed && System.nanoTime() <= deadline) {
+                changed = false;
+                for (int i = 0; i < myCount && System.nanoTime() <= deadline; i++) {
+                    int base = ids[i] * MOVES;
+                    int from = mine[i];
+                    int best = from;
+                    for (int move = 0; move < MOVES; move++) {
+                        int dest = myMoves[base + move];
+                        if (dest < 0 || dest == from) {
+                            continue;
+                        }
+                        mine[i] = dest;
+                        int score = worst(value);
+                        if (score > value) {
+                            value = score;
+                            best = dest;
+                        }
+                        mine[i] = from;
+                    }
+                    if (best != from) {
+                        mine[i] = best;
+                        changed = true;
+                    }
+                }
+            }
+            return value;
+        }
+
+        /*
+         * Leaves in reply the best enemy reply to my moves found by
+         * improving the worst reply of the pool one enemy at a time, until
+         * the deadline passes at the latest, and returns its score.
+         */
+        private int bestReply(long deadline) {
+            int worst = 0;
+            int value = Integer.MAX_VALUE;
+            for (int r = 0; r < replyCount; r++) {
+                int score = score(replies[r]);
+                if (score < value) {
+                    value = score;
+                    worst = r;
+                }
+            }
+            System.arraycopy(replies[worst], 0, reply, 0, enemyCount);
+            boolean changed = true;
+            while (changed && System.nanoTime() <= deadline) {
+                changed = false;
+                for (int j = 0; j < enemyCount && System.nanoTime() <= deadline; j++) {
+                    int base = enemyIds[j] * MOVES;
+                    int from = reply[j];
+                    int best = from;
+                    for (int move = 0; move < MOVES; move++) {
+                        int dest = enemyMoves[base + move];
+                        if (dest < 0 || dest == from) {
+                            continue;
+                        }
+                        reply[j] = dest;
+                        int score = score(reply);
+                        if (score < value) {
+                            value = score;
+                            best = dest;
+                        }
+                        reply[j] = from;
+                    }
+                    if (best != from) {
+                        reply[j] = best;
+                        changed = true;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+}
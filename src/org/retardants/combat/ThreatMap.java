@@ -0,0 +1,42 @@
+package org.retardants.combat;
+
+import org.retardants.adt.CoverageMap;
+import org.retardants.adt.Stencil;
+
+/**
+ * Counts, for every location, the enemy ants that could attack it next turn:
+ * those within the attack radius of it after at most one step.
+ *
+ * Each enemy stamps the stencil of its attack range after one move, computed
+ * once, and the counts carry over from turn to turn: an update only adds the
+ * stencils of enemies that arrived at a location and removes those of enemies
+ * that left one. Water is ignored, so an enemy walled in by water counts as
+ * if it could step anywhere.
+ */
+public class ThreatMap extends CoverageMap {
+
+    /**
+     * @param rows game map height
+     * @param cols game map width
+     * @param attackRadius2 squared attack radius of each ant
+     */
+    public ThreatMap(int rows, int cols, int attackRadius2) {
+        super(rows, cols, new Stencil(rows, cols, attackRadius2, true));
+    }
+
+    /**
+     * @return the number of enemies that could attack the location with flat
+     *         index cell next turn
+     */
+    public int getThreat(int cell) {
+        return getCoverage(cell);
+    }
+
+    /**
+     * @return whether any enemy could attack the location with flat index
+     *         cell next turn
+     */
+    public boolean isThreatened(int cell) {
+        return getCoverage(cell) > 0;
+    }
+}
@@ -0,0 +1,418 @@
+package org.retardants.diffusion;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Represents one toroidal grid of cells over which several scents (channels)
+ * diffuse at once: the two versions of their values, the kind of every cell,
+ * the cells emitting scent and the index of the neighbors of every cell.
+ *
+ * The fine grid of a DiffusionMap has one cell per Tile of the game map.
+ * Coarser grids, used to spread scent over long distances quickly, have one
+ * cell per 2x2 block of cells of the grid they were built from.
+ *
+ * Cells are addressed by their flat index row * cols + col, and the value of
+ * channel c of a cell is stored at cell * channels + c, so that a time step
+ * reads the neighbors of a cell once for all of its channels.
+ */
+class DiffusionGrid {
+
+    /* Cell kinds */
+    final static byte OPEN = 0;    // diffuses normally
+    final static byte BLOCKED = 1; // ant: no scent in obstructed channels
+    final static byte HOLD = 2;    // food: keeps its value in obstructed channels
+    final static byte WATER = 3;   // no scent at all
+
+    final int rows;
+    final int cols;
+    final int channels;
+    final VersionedTileArray array;
+
+    /* neighbors[4 * cell + aim.ordinal()] is the index of the adjacent cell */
+    final int[] neighbors;
+    final byte[] kinds;
+
+    /* Emitting slots (cell * channels + channel), see pinSources() */
+    int[] sources = new int[16];
+    int sourceCount = 0;
+    private final boolean[] pinned;
+    private int[] pinnedSlots = new int[16];
+    private int pinnedCount = 0;
+
+    /* Per channel parameters */
+    private final double[] diffValues;
+    private final double[] retention;
+    private final boolean[] obstructed;
+
+    /* Per block counts of restrictFrom, allocated on first use */
+    private int[] waterCells;
+    private int[] blockedCells;
+    private int[] fineCells;
+
+    /**
+     * @param diffValues The diffusion coefficient D of every channel
+     * @param decays The fraction of scent every channel loses per time step
+     * @param obstructed Whether ants block, and food holds, every channel
+     */
+    DiffusionGrid(int rows, int cols, int[] neighbors,
+            double[] diffValues, double[] decays, boolean[] obstructed) {
+        this.rows = rows;
+        this.cols = cols;
+        this.channels = diffValues.length;
+        this.array = new VersionedTileArray(rows, cols, channels);
+        this.neighbors = neighbors;
+        this.kinds = new byte[rows * cols];
+        this.pinned = new boolean[rows * cols * channels];
+        this.diffValues = diffValues;
+        this.retention = new double[channels];
+        for (int c = 0; c < channels; c++)
+            retention[c] = 1.0 - decays[c];
+        this.obstructed = obstructed;
+    }
+
+    int size() {
+        return kinds.length;
+    }
+
+    /*
+     * Make sure there is room for count sources.
+     */
+    void ensureSources(int count) {
+        if (sources.length < count)
+            sources = new int[Math.max(count, 2 * sources.length)];
+    }
+
+    /*
+     * Make the current sources of channels that are not obstructed, and only
+     * them, keep their value during time steps; in obstructed channels food
+     * cells already do. Must be called whenever the sources change.
+     */
+    void pinSources() {
+        for (int k = 0; k < pinnedCount; k++)
+            pinned[pinnedSlots[k]] = false;
+        if (pinnedSlots.length < sourceCount)
+            pinnedSlots = new int[sources.length];
+        for (int k = 0; k < sourceCount; k++)
+            pinned[sources[k]] = !obstructed[sources[k] % channels];
+        System.arraycopy(sources, 0, pinnedSlots, 0, sourceCount);
+        pinnedCount = sourceCount;
+    }
+
+    /*
+     * To each source slot, add the scent of its channel.
+     */
+    void placeSources(double[] strengths) {
+        double[] committed = array.getCommittedValues();
+        for (int k = 0; k < sourceCount; k++) {
+            int slot = sources[k];
+            committed[slot] = strengths[slot % channels];
+        }
+    }
+
+    /*
+     * Whether channel c diffuses through cells of the given kind.
+     */
+    private boolean diffuses(byte kind, int c) {
+        return kind == OPEN || (kind != WATER && !obstructed[c]);
+    }
+
+    /*
+     * The new values of a cell after one time step, for every channel:
+     *
+     * map(i,j) = (map(i,j) + D * sum(map[(i',j') - map(i,j))) * (1 - decay)
+     *
+     * where (i',j') ranges over the four neighbors of (i,j). Water, and ants
+     * in obstructed channels, are set to zero; food in obstructed channels,
+     * and sources in the others, keep their value. Returns the largest
+     * change.
+     */
+    private double diffuse(int cell, double[] from, double[] to) {
+        byte kind = kinds[cell];
+        int base = cell * channels;
+        int n = 4 * cell;
+        int north = neighbors[n] * channels;
+        int east = neighbors[n + 1] * channels;
+        int south = neighbors[n + 2] * channels;
+        int west = neighbors[n + 3] * channels;
+        double maxDelta = 0.0;
+        for (int c = 0; c < channels; c++) {
+            double value = from[base + c];
+            double next;
+            if (pinned[base + c])
+                next = value;
+            else if (diffuses(kind, c))
+                next = (value + diffValues[c] * (from[north + c] + from[east + c]
+                        + from[south + c] + from[west + c] - 4 * value)) * retention[c];
+            else if (kind == HOLD)
+                next = value;
+            else
+                next = 0.0;
+            maxDelta = Math.max(maxDelta, Math.abs(next - value));
+            to[base + c] = next;
+        }
+        return maxDelta;
+    }
+
+    /*
+     * Same as diffuse, for a grid with a single channel, where the slot of a
+     * cell is the cell itself. This keeps the common case of a food only map
+     * as cheap as it was before channels existed.
+     */
+    private double diffuseSingle(int cell, double[] from, double[] to) {
+        double value = from[cell];
+        double next;
+        byte kind = kinds[cell];
+        if (kind == WATER || pinned[cell]) {
+            next = kind == WATER ? 0.0 : value;
+        } else if (kind == OPEN || !obstructed[0]) {
+            int n = 4 * cell;
+            next = (value + diffValues[0] * (from[neighbors[n]] + from[neighbors[n + 1]]
+                    + from[neighbors[n + 2]] + from[neighbors[n + 3]] - 4 * value)) * retention[0];
+        } else {
+            next = kind == HOLD ? value : 0.0;
+        }
+        to[cell] = next;
+        return Math.abs(next - value);
+    }
+
+    /**
+     * Perform a single diffusion time step over every cell.
+     *
+     * @return The largest change of any cell value
+     */
+    double timeStep() {
+        double maxDelta = sweep(0, size());
+        array.commit();
+        return maxDelta;
+    }
+
+    /**
+     * Perform a single diffusion time step over every cell, splitting the
+     * rows into stripes of at most stripeRows rows run by the given pool.
+     * Stripes only read the committed version and each writes its own cells
+     * of the uncommitted one, so they need no locking; the version is only
+     * committed once every stripe is done.
+     *
+     * @return The largest change of any cell value
+     */
+    double timeStep(ForkJoinPool pool, int stripeRows) {
+        double maxDelta = pool.invoke(new Stripe(0, rows, stripeRows));
+        array.commit();
+        return maxDelta;
+    }
+
+    /**
+     * Perform a single diffusion time step over the first count cells of
+     * the given list. Both versions of the array must hold the same values
+     * for every other cell.
+     *
+     * @return The largest change of any listed cell value
+     */
+    double timeStep(int[] cells, int count) {
+        double[] from = array.getCommittedValues();
+        double[] to = array.getUncommittedValues();
+        double maxDelta = 0.0;
+        if (channels == 1) {
+            for (int k = 0; k < count; k++)
+                maxDelta = Math.max(maxDelta, diffuseSingle(cells[k], from, to));
+        } else {
+            for (int k = 0; k < count; k++)
+                maxDelta = Math.max(maxDelta, diffuse(cells[k], from, to));
+        }
+        array.commit();
+        return maxDelta;
+    }
+
+    /*
+     * Diffuse the cells from start (inclusive) to end (exclusive) into the
+     * uncommitted version, without committing it. Returns the largest change.
+     */
+    private double sweep(int start, int end) {
+        double[] from = array.getCommittedValues();
+        double[] to = array.getUncommittedValues();
+        double maxDelta = 0.0;
+        if (channels == 1) {
+            for (int cell = start; cell < end; cell++)
+                maxDelta = Math.max(maxDelta, diffuseSingle(cell, from, to));
+            return maxDelta;
+        }
+
+        /* Same as diffuse for every cell, as one flat loop over the slots of
+           the cells: a short loop over the channels of each cell costs more
+           than the arithmetic it runs. */
+        int c = channels;
+        int cell = start - 1;
+        byte kind = OPEN;
+        int north = 0, east = 0, south = 0, west = 0;
+        for (int slot = start * channels, last = end * channels; slot < last; slot++, c++) {
+            if (c == channels) {
+                c = 0;
+                cell++;
+                kind = kinds[cell];
+                int n = 4 * cell;
+                north = neighbors[n] * channels;
+                east = neighbors[n + 1] * channels;
+                south = neighbors[n + 2] * channels;
+                west = neighbors[n + 3] * channels;
+            }
+            double value = from[slot];
+            double next;
+            if (pinned[slot])
+                next = value;
+            else if (diffuses(kind, c))
+                next = (value + diffValues[c] * (from[north + c] + from[east + c]
+                        + from[south + c] + from[west + c] - 4 * value)) * retention[c];
+            else if (kind == HOLD)
+                next = value;
+            else
+                next = 0.0;
+            maxDelta = Math.max(maxDelta, Math.abs(next - value));
+            to[slot] = next;
+        }
+        return maxDelta;
+    }
+
+    /*
+     * The rows from start to end, split in halves until they are at most
+     * stripeRows long. Each task returns the largest change of its rows.
+     */
+    private class Stripe extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int stripeRows;
+
+        Stripe(int start, int end, int stripeRows) {
+            this.start = start;
+            this.end = end;
+            this.stripeRows = stripeRows;
+        }
+
+        @Override
+        protected Double compute() {
+            if (end - start <= stripeRows)
+                return sweep(start * cols, end * cols);
+            int middle = (start + end) >>> 1;
+            Stripe top = new Stripe(start, middle, stripeRows);
+            top.fork();
+            double bottom = new Stripe(middle, end, stripeRows).compute();
+            return Math.max(bottom, top.join());
+        }
+    }
+
+    /*
+     * Build the neighbor table of a toroidal grid.
+     */
+    static int[] neighborTable(int rows, int cols) {
+        int[] table = new int[4 * rows * cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int n = 4 * (i * cols + j);
+                table[n] = ((i + rows - 1) % rows) * cols + j;     // NORTH
+                table[n + 1] = i * cols + (j + 1) % cols;          // EAST
+                table[n + 2] = ((i + 1) % rows) * cols + j;        // SOUTH
+                table[n + 3] = i * cols + (j + cols - 1) % cols;   // WEST
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Build an empty grid with one cell per 2x2 block of cells of this one,
+     * and the same channels.
+     */
+    DiffusionGrid coarsen() {
+        int coarseRows = (rows + 1) / 2;
+        int coarseCols = (cols + 1) / 2;
+        double[] decays = new double[channels];
+        for (int c = 0; c < channels; c++)
+            decays[c] = 1.0 - retention[c];
+        return new DiffusionGrid(coarseRows, coarseCols,
+                neighborTable(coarseRows, coarseCols), diffValues, decays, obstructed);
+    }
+
+    /*
+     * The cell of this (coarse) grid covering the given cell of fine.
+     */
+    private int parent(DiffusionGrid fine, int cell) {
+        return (cell / fine.cols / 2) * cols + (cell % fine.cols) / 2;
+    }
+
+    /**
+     * Make this grid, built by fine.coarsen(), an approximation of fine: a
+     * block holds food if any of its cells does, is water if at least half
+     * of its cells are, and is blocked if at least half of its cells are
+     * water or ants. Its sources are the blocks of the sources of fine, and
+     * its values the average of their cells.
+     */
+    void restrictFrom(DiffusionGrid fine) {
+        int size = size();
+        if (fineCells == null) {
+            waterCells = new int[size];
+            blockedCells = new int[size];
+            fineCells = new int[size];
+        }
+        int[] water = waterCells;
+        int[] blocked = blockedCells;
+        int[] total = fineCells;
+        java.util.Arrays.fill(water, 0);
+        java.util.Arrays.fill(blocked, 0);
+        java.util.Arrays.fill(total, 0);
+        double[] values = array.getCommittedValues();
+        double[] fineValues = fine.array.getCommittedValues();
+        java.util.Arrays.fill(values, 0.0);
+        java.util.Arrays.fill(kinds, OPEN);
+
+        for (int cell = 0; cell < fine.size(); cell++) {
+            int block = parent(fine, cell);
+            total[block]++;
+            for (int c = 0; c < channels; c++)
+                values[block * channels + c] += fineValues[cell * channels + c];
+            byte kind = fine.kinds[cell];
+            if (kind == WATER)
+                water[block]++;
+            else if (kind == BLOCKED)
+                blocked[block]++;
+            else if (kind == HOLD)
+                kinds[block] = HOLD;
+        }
+        for (int block = 0; block < size; block++) {
+            for (int c = 0; c < channels; c++)
+                values[block * channels + c] /= total[block];
+            if (kinds[block] == HOLD)
+                continue;
+            if (2 * water[block] >= total[block])
+                kinds[block] = WATER;
+            else if (2 * (water[block] + blocked[block]) >= total[block])
+                kinds[block] = BLOCKED;
+        }
+
+        ensureSources(fine.sourceCount);
+        sourceCount = 0;
+        for (int k = 0; k < fine.sourceCount; k++) {
+            int slot = fine.sources[k];
+            sources[sourceCount++] = parent(fine, slot / channels) * channels + slot % channels;
+        }
+        pinSources();
+    }
+
+    /**
+     * Use the values of this grid, built by fine.coarsen(), as the starting
+     * point of every cell of fine through which their channel diffuses.
+     */
+    void prolongTo(DiffusionGrid fine) {
+        double[] values = array.getCommittedValues();
+        double[] fineValues = fine.array.getCommittedValues();
+        for (int cell = 0; cell < fine.size(); cell++) {
+            byte kind = fine.kinds[cell];
+            int block = parent(fine, cell);
+            for (int c = 0; c < channels; c++) {
+                if (diffuses(kind, c))
+                    fineValues[cell * channels + c] = values[block * channels + c];
+            }
+        }
+    }
+}
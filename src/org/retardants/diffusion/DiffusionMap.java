@@ -1,10 +1,12 @@
 package org.retardants.diffusion;
 
-import org.retardants.adt.Aim;
+import org.retardants.Log;
 import org.retardants.adt.Ants;
 import org.retardants.adt.Ilk;
 import org.retardants.adt.Tile;
+import org.retardants.path.DistanceField;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Represents a 2D array of diffusion values storing the state of all scents
@@ -13,6 +15,34 @@ import java.util.*;
  * ADT = map(i,j) - A map of i rows and j columns such that map(i,j) is the
  *                  diffusion value of cell (i,j)
  *
+ * A map may carry several scents at once, each in its own Channel with its
+ * own sources, strength, decay and diffusion coefficient (eg. food, enemy
+ * hills and unexplored tiles). The values of all channels of a cell are
+ * stored next to each other, so one time step advances every channel in a
+ * single pass over memory. Channel FOOD, the first one, is the one fed by
+ * the candies given to timeStep.
+ *
+ * Internally every cell (i,j) is addressed by its flat index i * cols + j, so
+ * a time step is a single pass over primitive arrays and allocates nothing.
+ * Every step also measures the largest change of any cell value (the
+ * residual), and timeStep stops as soon as it drops to a tolerance.
+ *
+ * In incremental mode, a call to timeStep warm-starts from the values left by
+ * the previous call and only re-diffuses the cells within a bounded radius of
+ * what changed in between (candies, ants, water), until the largest change
+ * in a step drops below a tolerance. Every few calls a full sweep lets the
+ * rest of the map keep converging.
+ *
+ * Plain time steps move scent one cell per step, so filling a large map
+ * takes hundreds of them. The COARSE_TO_FINE solver first diffuses over
+ * coarser copies of the map, one cell per 2x2 block, then uses each result
+ * as the starting point of the next finer level, so that only a few fine
+ * steps are left to settle the details around water, ants and food.
+ *
+ * With a parallelism above one, full sweeps of the fine grid are split into
+ * stripes of rows run by a pool of worker threads kept for the lifetime of
+ * the map.
+ *
  * @URL www.cs.colorado.edu/~ralex/papers/PDF/OOPSLA06antiobjects.pdf
  */
 public class DiffusionMap {
@@ -21,11 +51,139 @@ public class DiffusionMap {
     /* Static default values */
     public final static double DEFAULT_FOOD_COST = 100.00;
     public final static double  DEFAULT_DIFF_VALUE = 0.25;
+    public final static int DEFAULT_INCREMENTAL_RADIUS = 12;
+    public final static double DEFAULT_TOLERANCE = 0.01;
+    public final static int DEFAULT_REFRESH_INTERVAL = 10;
+
+    /** Index of the channel fed by the candies given to timeStep */
+    public final static int FOOD = 0;
+
+    /* Cell kinds of the passability mask */
+    private final static byte OPEN = DiffusionGrid.OPEN;
+    private final static byte BLOCKED = DiffusionGrid.BLOCKED;
+    private final static byte HOLD = DiffusionGrid.HOLD;
+    private final static byte WATER = DiffusionGrid.WATER;
+
+    /* Coarse levels stop once a side would be shorter than this */
+    private final static int MIN_COARSE_SIDE = 8;
+    /* Maximum number of time steps on each coarse level */
+    private final static int MAX_COARSE_STEPS = 200;
+
+    /* Parallel sweeps use about this many stripes per thread, of at least
+       MIN_STRIPE_ROWS rows each, so that idle threads can steal work */
+    private final static int STRIPES_PER_THREAD = 4;
+    private final static int MIN_STRIPE_ROWS = 4;
+
+    /**
+     * The parameters of one scent diffusing over the map.
+     */
+    public static class Channel {
+
+        private final String name;
+        private final double strength;
+        private final double decay;
+        private final double diffValue;
+        private final boolean obstructed;
+
+        /**
+         * @param name The name of the channel
+         * @param strength The amount of scent emitted by each of its sources
+         * @param decay The fraction of scent lost by every cell at every time
+         *              step, 0 for none
+         * @param diffValue The diffusion coefficient D, at most 0.25
+         * @param obstructed Whether ants absorb this scent and food keeps its
+         *                   own, as in collaborative diffusion of food, so
+         *                   that one ant hides a source from the ants behind
+         *                   it. Otherwise only water stops the scent.
+         */
+        public Channel(String name, double strength, double decay,
+                double diffValue, boolean obstructed) {
+            this.name = name;
+            this.strength = strength;
+            this.decay = decay;
+            this.diffValue = diffValue;
+            this.obstructed = obstructed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getStrength() {
+            return strength;
+        }
+
+        public double getDecay() {
+            return decay;
+        }
 
-    private VersionedTileArray array;
+        public double getDiffValue() {
+            return diffValue;
+        }
+
+        public boolean isObstructed() {
+            return obstructed;
+        }
+    }
+
+    /**
+     * How a full sweep of timeStep diffuses the scent.
+     */
+    public enum Solver {
+        /** Time steps over every cell of the map only */
+        JACOBI,
+        /** Coarse levels first, then time steps over every cell */
+        COARSE_TO_FINE
+    }
+
+    /* Above this fraction of changed cells a full sweep is just as cheap */
+    private final static double MAX_INCREMENTAL_FRACTION = 0.5;
+
+    private final DiffusionGrid grid;
+    private final VersionedTileArray array;
     private Ants antContext;
-    private double diffValue;
-    private double foodCost;
+
+    private final Channel[] channels;
+    private final double[] strengths;
+    /* Sources of every channel, as cell indices */
+    private final int[][] channelSources;
+    private final int[] channelSourceCounts;
+
+    private final int rows;
+    private final int cols;
+    private final byte[] kinds;
+
+    /* Coarse levels, coarse[0] built from grid and each next from the last */
+    private Solver solver = Solver.JACOBI;
+    private DiffusionGrid[] coarse;
+
+    /* Parallel sweeps, null pool when sequential */
+    private ForkJoinPool pool;
+    private int stripeRows;
+
+    /* Incremental mode */
+    private boolean incremental = false;
+    private int incrementalRadius = DEFAULT_INCREMENTAL_RADIUS;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private int refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private int callsSinceRefresh = 0;
+    private byte[] previousKinds;
+    private int[] previousSources = new int[16];
+    private int previousSourceCount = 0;
+    private int[] sourceCall;
+    private int calls = 0;
+    private int[] dirty;
+    private int[] active;
+    private DistanceField region;
+    /* Active cells of the last call, -1 for a full sweep, and whether this
+       call carries on with an unconverged full sweep */
+    private int lastActiveCount = -1;
+    private boolean resumed = false;
+
+    /* Convergence statistics of the last call to timeStep */
+    private int iterations = 0;
+    private double residual = Double.POSITIVE_INFINITY;
+    private int activeCells = 0;
 
 
 
@@ -40,6 +198,8 @@ public class DiffusionMap {
      * @param antContext The ants object corresponding to this bot. This object
      *                   is used to get information about the Ilks corresponding
      *                   to each Tile.
+     * @param diffValue The diffusion coefficient D
+     * @param foodCost The amount of scent emitted by every candy
      */
     protected DiffusionMap(
         int cols,
@@ -48,10 +208,7 @@ public class DiffusionMap {
         double diffValue,
         double foodCost) {
 
-        this.array = new VersionedTileArray(rows, cols);
-        this.antContext = antContext;
-        this.diffValue =  diffValue;
-        this.foodCost = foodCost;
+        this(cols, rows, antContext, new Channel("food", foodCost, 0.0, diffValue, true));
     }
 
     public DiffusionMap(int cols, int rows, Ants antContext) {
@@ -59,6 +216,72 @@ public class DiffusionMap {
 
     }
 
+    /**
+     * Construct a DiffusionMap carrying the given channels, the first of
+     * which is channel FOOD.
+     *
+     * @param cols The number of columns in the grid
+     * @param rows The number of rows in the grid
+     * @param antContext The ants object corresponding to this bot.
+     * @param channels The scents diffusing over the map, at least one
+     */
+    public DiffusionMap(int cols, int rows, Ants antContext, Channel... channels) {
+        int count = channels.length;
+        double[] diffValues = new double[count];
+        double[] decays = new double[count];
+        boolean[] obstructed = new boolean[count];
+        this.strengths = new double[count];
+        for (int c = 0; c < count; c++) {
+            diffValues[c] = channels[c].getDiffValue();
+            decays[c] = channels[c].getDecay();
+            obstructed[c] = channels[c].isObstructed();
+            strengths[c] = channels[c].getStrength();
+        }
+        this.grid = new DiffusionGrid(rows, cols, antContext.getNeighbors(),
+                diffValues, decays, obstructed);
+        this.array = grid.array;
+        this.antContext = antContext;
+        this.channels = channels.clone();
+        this.channelSources = new int[count][16];
+        this.channelSourceCounts = new int[count];
+        this.rows = rows;
+        this.cols = cols;
+        this.kinds = grid.kinds;
+    }
+
+    /**
+     * @return The number of channels of this map
+     */
+    public int getChannelCount() {
+        return channels.length;
+    }
+
+    /**
+     * @return The index of the channel with the given name, or -1 if there
+     *         is none
+     */
+    public int getChannel(String name) {
+        for (int c = 0; c < channels.length; c++) {
+            if (channels[c].getName().equals(name))
+                return c;
+        }
+        return -1;
+    }
+
+    /**
+     * Set the tiles emitting the scent of a channel, from the next call to
+     * timeStep on. The sources of channel FOOD are replaced by the candies
+     * given to every timeStep(n, candies) call.
+     */
+    public void setSources(int channel, Collection<Tile> tiles) {
+        if (channelSources[channel].length < tiles.size())
+            channelSources[channel] = new int[Math.max(tiles.size(), 2 * channelSources[channel].length)];
+        int count = 0;
+        for (Tile tile : tiles)
+            channelSources[channel][count++] = antContext.index(tile);
+        channelSourceCounts[channel] = count;
+    }
+
     /**
      * Return the diffusion value at the position represented by t
      *
@@ -69,73 +292,327 @@ public class DiffusionMap {
         return array.getCommittedValue(t);
     }
 
-    /*
-     * To each cell that now has a candy, add a scent of +FOOD_COST.
+    /**
+     * Return the diffusion value of a channel at the position represented
+     * by t
+     *
+     * @param t The position for which we want the diffusion value.
+     * @param channel The index of the channel
+     * @return The diffusion value
      */
-    private void placeCandies(Set<Tile> candies) {
-        for (Tile candy : candies) {
-            array.setCommittedValue(candy, foodCost);
-        }
+    public double getValue(Tile t, int channel) {
+        return array.getCommittedValue(t, channel);
     }
 
-    /*
-     * Perform diffusion of a single cell as:
-     *
-     * map(i,j) = map(i,j) + D * sum(map[(i',j') - map(i,j))
-     *
-     * @param i row number
-     * @param j col number
-     */
-    private void diffuse(Tile t) {
-        if (! antContext.getIlk(t).isUnoccupied()) {
-            /* TODO(jmunizn) Set to zero if unoccupied but not food */
-            if (! antContext.getIlk(t).equals(Ilk.FOOD))
-                array.setValue(t, 0.0);
-        }
-        else {
-            array.setValue(t, array.getCommittedValue(t));
-
-
-            double delta = 0.0;
-            /* Set delta as:
-             * DIFF_VALUE *
-             *  \sum(array.committedValue(neighbor) - array.committedValue(t))
-             *
-             */
-            for (Aim aim : Aim.values()) {
-                Tile neighbor = antContext.getTile(t, aim);
-                delta += array.getCommittedValue(neighbor);
+    /**
+     * Choose how full sweeps diffuse the scent. Incremental calls to timeStep
+     * always use plain time steps over their few cells.
+     */
+    public void setSolver(Solver solver) {
+        this.solver = solver;
+        if (solver == Solver.COARSE_TO_FINE && coarse == null) {
+            List<DiffusionGrid> levels = new ArrayList<DiffusionGrid>();
+            DiffusionGrid level = grid;
+            while (level.rows / 2 >= MIN_COARSE_SIDE && level.cols / 2 >= MIN_COARSE_SIDE) {
+                level = level.coarsen();
+                levels.add(level);
             }
+            coarse = levels.toArray(new DiffusionGrid[levels.size()]);
+        }
+    }
+
+    public Solver getSolver() {
+        return solver;
+    }
+
+    /**
+     * Set how many threads run full sweeps of the fine grid. With 1 (the
+     * default) every sweep runs on the calling thread; above that, sweeps are
+     * split into stripes of rows run by a pool of that many worker threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+            stripeRows = Math.max(MIN_STRIPE_ROWS,
+                    (rows + STRIPES_PER_THREAD * parallelism - 1) / (STRIPES_PER_THREAD * parallelism));
+        }
+    }
 
-            delta -= (Aim.values().length * array.getCommittedValue(t));
-            delta *= diffValue;
-            array.addValue(t, delta);
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
 
+    /**
+     * Enable or disable incremental mode. When enabled, calls to timeStep
+     * only re-diffuse the cells within getIncrementalRadius() steps of the
+     * cells that changed since the previous call, except for the first call
+     * and one call out of every getRefreshInterval(), which sweep every cell.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        if (incremental && region == null) {
+            int size = rows * cols;
+            previousKinds = new byte[size];
+            sourceCall = new int[size * channels.length];
+            dirty = new int[size];
+            active = new int[size];
+            region = new DistanceField(antContext);
         }
+    }
 
-        /* Place a value of zero if there's a non-food object blocking us */
+    public boolean isIncremental() {
+        return incremental;
+    }
 
+    /**
+     * Set how many steps away from a changed cell scent is re-diffused in
+     * incremental mode.
+     */
+    public void setIncrementalRadius(int incrementalRadius) {
+        this.incrementalRadius = incrementalRadius;
+    }
 
+    public int getIncrementalRadius() {
+        return incrementalRadius;
     }
+
     /**
-     * Perform a single diffusion time step
+     * Set after how many incremental calls to timeStep the next one sweeps
+     * every cell again.
+     */
+    public void setRefreshInterval(int refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Set the largest change of any cell value in a time step at or below
+     * which timeStep considers the map converged and stops. A tolerance of
+     * zero only stops on an exact fixed point.
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @return The number of time steps performed by the last call to timeStep
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return The largest change of any cell value during the last time step
+     *         of the last call to timeStep, or infinity if none was performed
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * @return Whether the last call to timeStep stopped because the map
+     *         converged, rather than running out of steps or time
+     */
+    public boolean isConverged() {
+        return residual <= tolerance;
+    }
+
+    /**
+     * @return The number of cells diffused per time step by the last call to
+     *         timeStep: every cell for a full sweep, fewer for an incremental
+     *         one
+     */
+    public int getActiveCells() {
+        return activeCells;
+    }
+
+    /*
+     * Refresh the passability mask from the Ilks of the current turn. This is
+     * the only place where the map of Ilks is read, once per call to
+     * timeStep(n, candies, maxTime) rather than once per cell and iteration.
+     * Most cells are open, so only the set bits of the other Ilks are visited.
+     */
+    private void updateKinds() {
+        Arrays.fill(kinds, OPEN);
+        markKinds(antContext.getLayer(Ilk.FOOD), HOLD);
+        markKinds(antContext.getLayer(Ilk.WATER), WATER);
+        markKinds(antContext.getLayer(Ilk.MY_ANT), BLOCKED);
+        markKinds(antContext.getLayer(Ilk.ENEMY_ANT), BLOCKED);
+    }
+
+    private void markKinds(long[] layer, byte kind) {
+        for (int w = 0; w < layer.length; w++) {
+            for (long bits = layer[w]; bits != 0; bits &= bits - 1)
+                kinds[(w << 6) + Long.numberOfTrailingZeros(bits)] = kind;
+        }
+    }
+
+    /*
+     * Gather the sources of every channel into the slots of the grid.
+     */
+    private void updateSources() {
+        int total = 0;
+        for (int c = 0; c < channels.length; c++)
+            total += channelSourceCounts[c];
+        grid.ensureSources(total);
+        int count = 0;
+        for (int c = 0; c < channels.length; c++) {
+            int[] cells = channelSources[c];
+            for (int k = 0; k < channelSourceCounts[c]; k++)
+                grid.sources[count++] = cells[k] * channels.length + c;
+        }
+        grid.sourceCount = count;
+        grid.pinSources();
+    }
+
+    /*
+     * To each cell that now has a candy, add a scent of +FOOD_COST, and
+     * likewise for the sources of every other channel.
+     */
+    private void placeCandies() {
+        grid.placeSources(strengths);
+    }
+
+    /*
+     * Collect the cells whose kind changed, or which gained or lost a source
+     * in any channel,
+     * since the previous call, and remember the current state for the next
+     * one. Returns how many there are.
      */
-    private void timeStep() {
-        for (int i = 0; i < antContext.getRows(); i++) {
-            for (int j = 0; j < antContext.getCols(); j++) {
-                diffuse(new Tile(i,j));
+    private int collectDirtyCells() {
+        int count = 0;
+        for (int cell = 0; cell < kinds.length; cell++) {
+            if (kinds[cell] != previousKinds[cell])
+                dirty[count++] = cell;
+        }
+        System.arraycopy(kinds, 0, previousKinds, 0, kinds.length);
+
+        int[] sources = grid.sources;
+        int sourceCount = grid.sourceCount;
+        int call = ++calls;
+        int width = channels.length;
+        for (int k = 0; k < sourceCount; k++) {
+            int slot = sources[k];
+            if (sourceCall[slot] != call - 1 && count < dirty.length)
+                dirty[count++] = slot / width; // new source
+            sourceCall[slot] = call;
+        }
+        for (int k = 0; k < previousSourceCount; k++) {
+            int slot = previousSources[k];
+            if (sourceCall[slot] != call && count < dirty.length)
+                dirty[count++] = slot / width; // source gone
+        }
+        if (previousSources.length < sourceCount)
+            previousSources = new int[sources.length];
+        System.arraycopy(sources, 0, previousSources, 0, sourceCount);
+        previousSourceCount = sourceCount;
+        return count;
+    }
+
+    /*
+     * Diffuse over every coarse level, from the coarsest one up, and start
+     * the fine grid from the result. Each level starts from the average of
+     * the values of the finer one, so a warm start is kept as far as it
+     * goes. Once maxTime milliseconds have passed since start, no level is
+     * stepped or prolonged any further: the fine grid keeps its own values
+     * unless every level was solved in time.
+     */
+    private void solveCoarse(long start, long maxTime) {
+        if ((System.currentTimeMillis() - start) > maxTime)
+            return;
+        DiffusionGrid finer = grid;
+        for (DiffusionGrid level : coarse) {
+            level.restrictFrom(finer);
+            finer = level;
+        }
+        for (int l = coarse.length - 1; l >= 0; l--) {
+            DiffusionGrid level = coarse[l];
+            for (int i = 0; i < MAX_COARSE_STEPS; i++) {
+                if ((System.currentTimeMillis() - start) > maxTime) {
+                    if (Log.isEnabled(Log.Subsystem.DIFFUSION, Log.Level.WARN))
+                        Log.warn(Log.Subsystem.DIFFUSION,
+                                "Time elapsed for coarse diffusion at level " + l + "!");
+                    return;
+                }
+                level.placeSources(strengths);
+                if (level.timeStep() <= tolerance)
+                    break;
             }
+            level.prolongTo(l == 0 ? grid : coarse[l - 1]);
         }
-        array.commit();
+    }
+
+    /*
+     * Decide which cells to diffuse during this call: returns how many cells
+     * of the active list to use, or -1 for a full sweep.
+     *
+     * A call that stopped short of the tolerance, for want of time or steps,
+     * is carried on by the next: with the same active cells if nothing
+     * changed since, or else with a full sweep from the values it reached.
+     */
+    private int selectActiveCells() {
+        resumed = false;
+        if (!incremental)
+            return -1;
+        boolean warm = calls > 0 && callsSinceRefresh < refreshInterval;
+        boolean unsettled = calls > 0 && residual > tolerance;
+        int dirtyCount = collectDirtyCells();
+        if (unsettled) {
+            if (dirtyCount == 0 && lastActiveCount > 0) {
+                callsSinceRefresh++;
+                return lastActiveCount; // active still holds them
+            }
+            callsSinceRefresh = 0;
+            resumed = true;
+            return -1;
+        }
+        int count = -1;
+        if (warm && dirtyCount <= MAX_INCREMENTAL_FRACTION * kinds.length)
+            count = region.compute(dirty, dirtyCount, incrementalRadius);
+        if (count < 0 || count > MAX_INCREMENTAL_FRACTION * kinds.length) {
+            callsSinceRefresh = 0;
+            return -1;
+        }
+        callsSinceRefresh++;
+        for (int k = 0; k < count; k++)
+            active[k] = region.reached(k);
+
+        /* Cells outside the region must look the same in both versions */
+        double[] committed = array.getCommittedValues();
+        System.arraycopy(committed, 0, array.getUncommittedValues(), 0, committed.length);
+        return count;
+    }
+
+    /**
+     * Perform n time steps without any time limit.
+     *
+     * @see #timeStep(int, Set, long)
+     */
+    public void timeStep(int n, Set<Tile> candies) {
+        timeStep(n, candies, Long.MAX_VALUE);
     }
 
     /**
-     * Perform n time steps
-     * @param n The number of time steps to perform
+     * Perform up to n time steps, stopping early once the map converges.
+     * See getIterations() and getResidual() for how far it got.
+     *
+     * @param n The maximum number of time steps to perform
      * @param candies The set of candies visible to our ants during this turn.
      *                This set may vary across time steps for these reasons:
      *                - A candy was consumed by us or the opponent.
      *                - A candy has left our visible range
+     * @param maxTime The maximum number of milliseconds to spend
      */
     public void timeStep(int n, Set<Tile> candies, long maxTime) {
          /* Note: Even though we have 'ants' from which we could get the
@@ -143,17 +620,55 @@ public class DiffusionMap {
                   not to use antContext to get information about candies or
                   enemy hills.
           */
+        setSources(FOOD, candies);
+        timeStep(n, maxTime);
+    }
 
-        System.err.println("Diffusion map has maxTime of " + maxTime);
+    /**
+     * Perform up to n time steps of every channel, from the sources last set
+     * for each, stopping early once the map converges.
+     *
+     * @param n The maximum number of time steps to perform
+     * @param maxTime The maximum number of milliseconds to spend
+     */
+    public void timeStep(int n, long maxTime) {
+        if (Log.isDebug(Log.Subsystem.DIFFUSION))
+            Log.debug(Log.Subsystem.DIFFUSION, "Diffusion map has maxTime of " + maxTime);
         long start = System.currentTimeMillis();
-        for (int i = 0; i < n; i++) {
+        updateKinds();
+        updateSources();
+        int count = selectActiveCells();
+        lastActiveCount = count;
+        /* Coarse levels would overwrite the values a resumed sweep carries on from */
+        if (count < 0 && solver == Solver.COARSE_TO_FINE && !resumed)
+            solveCoarse(start, maxTime);
+
+        iterations = 0;
+        activeCells = count < 0 ? kinds.length : count;
+        /* With no active cells the previous, converged residual still holds */
+        if (count != 0)
+            residual = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n && count != 0; i++) {
             if ((System.currentTimeMillis() - start) > maxTime) {
-                System.err.println("Time elapsed for diffusion map! Exiting after " + i + " iterations.");
+                if (Log.isEnabled(Log.Subsystem.DIFFUSION, Log.Level.WARN))
+                    Log.warn(Log.Subsystem.DIFFUSION,
+                            "Time elapsed for diffusion map! Exiting after " + i + " iterations.");
                 break;
             }
-            this.placeCandies(candies);
-            timeStep();
+            this.placeCandies();
+            if (count >= 0)
+                residual = grid.timeStep(active, count);
+            else if (pool != null)
+                residual = grid.timeStep(pool, stripeRows);
+            else
+                residual = grid.timeStep();
+            iterations++;
+            if (residual <= tolerance)
+                break;
         }
+        if (Log.isInfo(Log.Subsystem.DIFFUSION))
+            Log.info(Log.Subsystem.DIFFUSION, "Diffusion map did " + iterations + " iterations over "
+                    + activeCells + " cells, residual " + residual);
     }
 
 }
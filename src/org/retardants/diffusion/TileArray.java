@@ -6,12 +6,26 @@ import org.retardants.adt.Tile;
  * This class represents a wrapper for a bi-dimensional array of doubles to be
  * accessed via Tile objects rather than directly through its coordinates.
  *
+ * The values are stored row by row in a single flat array, so that a cell can
+ * also be addressed directly by its index (row * cols + col).
+ *
+ * A TileArray may hold several values (channels) per position, stored next
+ * to each other: channel c of index i is at i * channels + c. Methods without
+ * a channel access channel 0.
  */
 public class TileArray {
-    private double[][] map;
+    private final double[] map;
+    private final int cols;
+    private final int channels;
 
     public TileArray(int rows, int cols) {
-        map = new double[rows][cols];
+        this(rows, cols, 1);
+    }
+
+    public TileArray(int rows, int cols, int channels) {
+        this.map = new double[rows * cols * channels];
+        this.cols = cols;
+        this.channels = channels;
     }
 
     /**
@@ -21,7 +35,7 @@ public class TileArray {
      * @param d The value to be added to the diffusion value at t
      */
     public void addValue(Tile t, double d) {
-        map[t.getRow()][t.getCol()] += d;
+        map[(t.getRow() * cols + t.getCol()) * channels] += d;
     }
 
 
@@ -32,7 +46,20 @@ public class TileArray {
      * @return The diffusion value
      */
     public double getValue(Tile t) {
-        return map[t.getRow()][t.getCol()];
+        return map[(t.getRow() * cols + t.getCol()) * channels];
+    }
+
+
+    /**
+     * Return the diffusion value of the given channel at the position
+     * represented by t
+     *
+     * @param t The position for which we want the diffusion value.
+     * @param channel The channel for which we want the diffusion value.
+     * @return The diffusion value
+     */
+    public double getValue(Tile t, int channel) {
+        return map[(t.getRow() * cols + t.getCol()) * channels + channel];
     }
 
 
@@ -43,9 +70,19 @@ public class TileArray {
      * @param d The value to be set as the diffusion value at t
      */
     public void setValue(Tile t, double d) {
-        map[t.getRow()][t.getCol()] = d;
+        map[(t.getRow() * cols + t.getCol()) * channels] = d;
     }
 
 
-}
+    /**
+     * Return the backing array of this TileArray, indexed by
+     * (row * cols + col) * channels + channel.
+     *
+     * Writes to the returned array are visible through this TileArray.
+     */
+    public double[] getValues() {
+        return map;
+    }
 
+
+}
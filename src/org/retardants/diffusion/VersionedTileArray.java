@@ -20,8 +20,12 @@ public class VersionedTileArray {
     private int uncommittedVersion = 1;
 
     public VersionedTileArray (int rows, int cols) {
-        arrays[0] = new TileArray(rows, cols);
-        arrays[1] = new TileArray(rows, cols);
+        this(rows, cols, 1);
+    }
+
+    public VersionedTileArray (int rows, int cols, int channels) {
+        arrays[0] = new TileArray(rows, cols, channels);
+        arrays[1] = new TileArray(rows, cols, channels);
     }
 
     /*
@@ -85,5 +89,38 @@ public class VersionedTileArray {
     }
 
 
+    /**
+     * Return the committed diffusion value of the given channel at the
+     * position represented by t
+     *
+     * @param t The position for which we want the diffusion value.
+     * @param channel The channel for which we want the diffusion value.
+     * @return The diffusion value
+     */
+    public double getCommittedValue(Tile t, int channel) {
+        return arrays[committedVersion].getValue(t, channel);
+    }
+
+
+    /**
+     * Return the flat backing array of the committed version.
+     *
+     * The returned array is only valid until the next call to commit().
+     */
+    public double[] getCommittedValues() {
+        return arrays[committedVersion].getValues();
+    }
+
+
+    /**
+     * Return the flat backing array of the uncommitted version.
+     *
+     * The returned array is only valid until the next call to commit().
+     */
+    public double[] getUncommittedValues() {
+        return arrays[uncommittedVersion].getValues();
+    }
+
+
 }
 
@@ -0,0 +1,310 @@
+package org.retardants.food;
+
+import java.util.Arrays;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.path.DistanceField;
+
+/**
+ * A FoodAssignment matches ants to food so that as many food as possible get
+ * an ant, and the total number of steps walked is as small as possible.
+ *
+ * Distances go around water: a breadth-first search from every food, bounded
+ * by a maximum distance, measures the steps to every ant within reach. The
+ * matching is then solved exactly with the Hungarian algorithm, one food (or
+ * ant, whichever there are fewer of) at a time. If the deadline passes before
+ * it is done, the rest are matched greedily, each to its nearest free
+ * partner, and isOptimal() tells so.
+ *
+ * All state lives in primitive arrays reused from call to call; ants and
+ * food are given as flat indices of Ants.
+ */
+public class FoodAssignment {
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final int maxDistance;
+    private final DistanceField field;
+
+    /* Cost of a food an ant cannot reach: more than any set of reachable pairs */
+    private int unreachable;
+
+    /* Ant number of every ant location, valid iff antStamps matches */
+    private final int[] antIds;
+    private final int[] antStamps;
+    private int stamp = 0;
+
+    private final int[] source = new int[1];
+
+    private int antCount;
+    private int foodCount;
+
+    /* Steps from food f to ant a, and the first step of a towards f, at f * antCount + a */
+    private int[] costs = new int[0];
+    private byte[] steps = new byte[0];
+
+    /* Food and ants within reach of each other, the only ones worth matching */
+    private int[] foodList = new int[0];
+    private int[] antList = new int[0];
+    private boolean[] antInReach = new boolean[0];
+
+    /* Hungarian state, 1-based as rows and columns of the cost matrix */
+    private int[] u = new int[1];
+    private int[] v = new int[1];
+    private int[] match = new int[1];
+    private int[] way = new int[1];
+    private int[] minv = new int[1];
+    private boolean[] used = new boolean[1];
+
+    /* Result: food of every ant and ant of every food, -1 if none */
+    private int[] foodOf = new int[0];
+    private int[] antOf = new int[0];
+    private boolean optimal;
+
+    /**
+     * Constructs a new FoodAssignment for the map of <code>ants</code>,
+     * pairing only ants and food at most <code>maxDistance</code> steps
+     * apart.
+     */
+    public FoodAssignment(Ants ants, int maxDistance) {
+        int size = ants.getRows() * ants.getCols();
+        this.maxDistance = maxDistance;
+        this.field = new DistanceField(ants);
+        this.antIds = new int[size];
+        this.antStamps = new int[size];
+    }
+
+    /**
+     * Matches the first <code>antCount</code> ants of <code>antCells</code>
+     * to the first <code>foodCount</code> food of <code>foodCells</code>.
+     *
+     * @requires no location is listed twice in antCells or in foodCells
+     * @param deadline System.nanoTime() after which the matching is
+     *        finished greedily
+     * @return the number of food matched to an ant
+     */
+    public int assign(int[] antCells, int antCount, int[] foodCells, int foodCount,
+            long deadline) {
+        this.antCount = antCount;
+        this.foodCount = foodCount;
+        ensureCapacity();
+        Arrays.fill(foodOf, 0, antCount, -1);
+        Arrays.fill(antOf, 0, foodCount, -1);
+        optimal = true;
+        if (antCount == 0 || foodCount == 0) {
+            return 0;
+        }
+
+        if (++stamp == 0) {
+            Arrays.fill(antStamps, 0);
+            stamp = 1;
+        }
+        for (int a = 0; a < antCount; a++) {
+            antIds[antCells[a]] = a;
+            antStamps[antCells[a]] = stamp;
+        }
+
+        // One bounded search per food fills its row of the cost matrix.
+        int pairs = foodCount * antCount;
+        unreachable = Math.min(foodCount, antCount) * (maxDistance + 1) + 1;
+        Arrays.fill(costs, 0, pairs, unreachable);
+        Arrays.fill(antInReach, 0, antCount, false);
+        int foods = 0;
+        for (int f = 0; f < foodCount; f++) {
+            source[0] = foodCells[f];
+            int reached = field.compute(source, 1, maxDistance);
+            boolean inReach = false;
+            for (int k = 0; k < reached; k++) {
+                int cell = field.reached(k);
+                if (antStamps[cell] == stamp) {
+                    int a = antIds[cell];
+                    costs[f * antCount + a] = field.getDistance(cell);
+                    Aim step = field.getDirection(cell);
+                    steps[f * antCount + a] = (byte)(step == null ? -1 : step.ordinal());
+                    antInReach[a] = true;
+                    inReach = true;
+                }
+            }
+            if (inReach) {
+                foodList[foods++] = f;
+            }
+        }
+        int antsInReach = 0;
+        for (int a = 0; a < antCount; a++) {
+            if (antInReach[a]) {
+                antList[antsInReach++] = a;
+            }
+        }
+
+        // The Hungarian algorithm wants no more rows than columns.
+        boolean transposed = foods > antsInReach;
+        int rows = transposed ? antsInReach : foods;
+        int columns = transposed ? foods : antsInReach;
+        solve(rows, columns, transposed, deadline);
+
+        int matched = 0;
+        for (int j = 1; j <= columns; j++) {
+            int i = match[j];
+            if (i == 0) {
+                continue;
+            }
+            int f = foodList[transposed ? j - 1 : i - 1];
+            int a = antList[transposed ? i - 1 : j - 1];
+            if (costs[f * antCount + a] < unreachable) {
+                foodOf[a] = f;
+                antOf[f] = a;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /*
+     * Cost of row i and column j, both 1-based, of the matrix of the food and
+     * ants in reach.
+     */
+    private int cost(int i, int j, boolean transposed) {
+        return transposed
+            ? costs[foodList[j - 1] * antCount + antList[i - 1]]
+            : costs[foodList[i - 1] * antCount + antList[j - 1]];
+    }
+
+    /*
+     * Hungarian algorithm with potentials, adding one row at a time in
+     * O(rows * columns) each; match[j] is the row matched to column j.
+     */
+    private void solve(int rows, int columns, boolean transposed, long deadline) {
+        Arrays.fill(u, 0, rows + 1, 0);
+        Arrays.fill(v, 0, columns + 1, 0);
+        Arrays.fill(match, 0, columns + 1, 0);
+        int infinity = Integer.MAX_VALUE / 2;
+        int row = 1;
+        for (; row <= rows; row++) {
+            if (System.nanoTime() > deadline) {
+                optimal = false;
+                break;
+            }
+            match[0] = row;
+            int j0 = 0;
+            Arrays.fill(minv, 0, columns + 1, infinity);
+            Arrays.fill(used, 0, columns + 1, false);
+            do {
+                used[j0] = true;
+                int i0 = match[j0];
+                int delta = infinity;
+                int j1 = 0;
+                for (int j = 1; j <= columns; j++) {
+                    if (!used[j]) {
+                        int current = cost(i0, j, transposed) - u[i0] - v[j];
+                        if (current < minv[j]) {
+                            minv[j] = current;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= columns; j++) {
+                    if (used[j]) {
+                        u[match[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (match[j0] != 0);
+            do {
+                int j1 = way[j0];
+                match[j0] = match[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        // Out of time: the rows left each take their nearest free column.
+        for (; row <= rows; row++) {
+            int best = 0;
+            int bestCost = unreachable;
+            for (int j = 1; j <= columns; j++) {
+                if (match[j] == 0 && cost(row, j, transposed) < bestCost) {
+                    best = j;
+                    bestCost = cost(row, j, transposed);
+                }
+            }
+            if (best != 0) {
+                match[best] = row;
+            }
+        }
+    }
+
+    private void ensureCapacity() {
+        int pairs = foodCount * antCount;
+        if (costs.length < pairs) {
+            costs = new int[2 * pairs];
+            steps = new byte[2 * pairs];
+        }
+        int side = Math.max(foodCount, antCount) + 1;
+        if (u.length < side) {
+            u = new int[2 * side];
+            v = new int[2 * side];
+            match = new int[2 * side];
+            way = new int[2 * side];
+            minv = new int[2 * side];
+            used = new boolean[2 * side];
+        }
+        if (foodOf.length < antCount) {
+            foodOf = new int[2 * antCount];
+            antList = new int[2 * antCount];
+            antInReach = new boolean[2 * antCount];
+        }
+        if (antOf.length < foodCount) {
+            antOf = new int[2 * foodCount];
+            foodList = new int[2 * foodCount];
+        }
+    }
+
+    /**
+     * @requires 0 <= ant < the antCount of the latest assign()
+     * @return the number of the food matched to <code>ant</code>, or -1
+     */
+    public int getFood(int ant) {
+        return foodOf[ant];
+    }
+
+    /**
+     * @requires 0 <= food < the foodCount of the latest assign()
+     * @return the number of the ant matched to <code>food</code>, or -1
+     */
+    public int getAnt(int food) {
+        return antOf[food];
+    }
+
+    /**
+     * @requires <code>ant</code> is matched to a food
+     * @return the number of steps from <code>ant</code> to its food
+     */
+    public int getDistance(int ant) {
+        return costs[foodOf[ant] * antCount + ant];
+    }
+
+    /**
+     * @requires <code>ant</code> is matched to a food
+     * @return the direction of the first step of <code>ant</code> towards
+     *         its food, or null if it is already there
+     */
+    public Aim getDirection(int ant) {
+        byte step = steps[foodOf[ant] * antCount + ant];
+        return step < 0 ? null : AIMS[step];
+    }
+
+    /**
+     * @return true iff the latest assign() finished before its deadline, so
+     *         that its matching is optimal
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+}
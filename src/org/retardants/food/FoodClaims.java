@@ -0,0 +1,180 @@
+package org.retardants.food;
+
+import java.util.Arrays;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+
+/**
+ * FoodClaims sends at most one ant to every food, by growing a breadth-first
+ * search from all food at once. Every tile reached is labeled with the food
+ * whose frontier got there first; the first free ant a frontier reaches
+ * claims that food, and the frontier stops growing.
+ *
+ * Frontiers advance one step at a time in turn, so every food claims the
+ * nearest ant not claimed by a nearer food, and no two food chase the same
+ * ant. The search visits each tile within the maximum distance of some food
+ * at most once, and stops early once every food is claimed. All state lives
+ * in primitive arrays indexed by the flat tile index of Ants, allocated once;
+ * generation stamps tell which entries belong to the latest search.
+ */
+public class FoodClaims {
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final Ants ants;
+    private final int maxDistance;
+
+    private final int[] queue;
+    private final int[] distance;
+    private final int[] owner;
+    private final int[] visited;
+
+    /* Ant number of every ant location, valid iff antStamps matches */
+    private final int[] antIds;
+    private final int[] antStamps;
+    private int generation = 0;
+
+    /* Result: food of every ant and ant of every food, -1 if none */
+    private int[] foodOf = new int[0];
+    private int[] antOf = new int[0];
+    private int[] antDistance = new int[0];
+    private byte[] antStep = new byte[0];
+
+    /**
+     * Constructs a new FoodClaims for the map of <code>ants</code>, sending
+     * ants only to food at most <code>maxDistance</code> steps away.
+     */
+    public FoodClaims(Ants ants, int maxDistance) {
+        int size = ants.getRows() * ants.getCols();
+        this.ants = ants;
+        this.maxDistance = maxDistance;
+        this.queue = new int[size];
+        this.distance = new int[size];
+        this.owner = new int[size];
+        this.visited = new int[size];
+        this.antIds = new int[size];
+        this.antStamps = new int[size];
+    }
+
+    /**
+     * Lets the first <code>foodCount</code> food of <code>foodCells</code>
+     * claim ants among the first <code>antCount</code> ants of
+     * <code>antCells</code>.
+     *
+     * @requires no location is listed twice in antCells
+     * @return the number of food that claimed an ant
+     */
+    public int claim(int[] antCells, int antCount, int[] foodCells, int foodCount) {
+        ensureCapacity(antCount, foodCount);
+        Arrays.fill(foodOf, 0, antCount, -1);
+        Arrays.fill(antOf, 0, foodCount, -1);
+        if (antCount == 0 || foodCount == 0) {
+            return 0;
+        }
+        if (++generation == 0) {
+            Arrays.fill(visited, 0);
+            Arrays.fill(antStamps, 0);
+            generation = 1;
+        }
+        int stamp = generation;
+        for (int a = 0; a < antCount; a++) {
+            antIds[antCells[a]] = a;
+            antStamps[antCells[a]] = stamp;
+        }
+
+        int tail = 0;
+        for (int f = 0; f < foodCount; f++) {
+            int cell = foodCells[f];
+            if (visited[cell] == stamp) {
+                continue;
+            }
+            visited[cell] = stamp;
+            distance[cell] = 0;
+            owner[cell] = f;
+            queue[tail++] = cell;
+        }
+
+        int[] neighbors = ants.getNeighbors();
+        long[] water = ants.getLayer(Ilk.WATER);
+        int claimed = 0;
+        // Every tile is queued at most once, so the queue never wraps.
+        for (int head = 0; head < tail && claimed < foodCount; head++) {
+            int cell = queue[head];
+            int food = owner[cell];
+            if (antOf[food] >= 0) {
+                continue; // this frontier has stopped
+            }
+            int nextDistance = distance[cell] + 1;
+            if (nextDistance > maxDistance) {
+                continue;
+            }
+            for (int aim = 0; aim < 4; aim++) {
+                int next = neighbors[cell * 4 + aim];
+                if (visited[next] == stamp || (water[next >>> 6] & (1L << next)) != 0) {
+                    continue;
+                }
+                visited[next] = stamp;
+                distance[next] = nextDistance;
+                owner[next] = food;
+                if (antStamps[next] == stamp && foodOf[antIds[next]] < 0) {
+                    int a = antIds[next];
+                    foodOf[a] = food;
+                    antOf[food] = a;
+                    antDistance[a] = nextDistance;
+                    // Aims are ordered clockwise, so the opposite one is two away.
+                    antStep[a] = (byte)((aim + 2) & 3);
+                    claimed++;
+                    break;
+                }
+                queue[tail++] = next;
+            }
+        }
+        return claimed;
+    }
+
+    private void ensureCapacity(int antCount, int foodCount) {
+        if (foodOf.length < antCount) {
+            foodOf = new int[2 * antCount];
+            antDistance = new int[2 * antCount];
+            antStep = new byte[2 * antCount];
+        }
+        if (antOf.length < foodCount) {
+            antOf = new int[2 * foodCount];
+        }
+    }
+
+    /**
+     * @requires 0 <= ant < the antCount of the latest claim()
+     * @return the number of the food that claimed <code>ant</code>, or -1
+     */
+    public int getFood(int ant) {
+        return foodOf[ant];
+    }
+
+    /**
+     * @requires 0 <= food < the foodCount of the latest claim()
+     * @return the number of the ant claimed by <code>food</code>, or -1
+     */
+    public int getAnt(int food) {
+        return antOf[food];
+    }
+
+    /**
+     * @requires <code>ant</code> was claimed by a food
+     * @return the number of steps from <code>ant</code> to its food
+     */
+    public int getDistance(int ant) {
+        return antDistance[ant];
+    }
+
+    /**
+     * @requires <code>ant</code> was claimed by a food
+     * @return the direction of the first step of <code>ant</code> towards
+     *         its food
+     */
+    public Aim getDirection(int ant) {
+        return AIMS[antStep[ant]];
+    }
+}
@@ -0,0 +1,127 @@
+package org.retardants.path;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A CompactGraph is an immutable directed graph stored in compressed sparse
+ * row form, meant for search-heavy workloads. It is obtained from a Graph
+ * through Graph.compile().
+ *
+ * Every node is mapped to a dense id in [0, size()). The children of the node
+ * with id <code>i</code> are the ids <code>child(k)</code> for
+ * <code>childStart(i) <= k < childEnd(i)</code>, so walking them takes two
+ * array reads per edge and allocates nothing.
+ *
+ * @specfield nodes : set // nodes in this graph
+ * @specfield edges : set // (directed) edges in this graph, of form (A->B)
+ */
+public class CompactGraph<N> {
+
+	private final Object[] nodes;
+	private final Map<N,Integer> ids;
+	private final int[] offsets;
+	private final int[] targets;
+
+	// Abstraction Function:
+	//   AF(c) = a graph G such that
+	//			nodes = { c.nodes[i] | 0 <= i < c.nodes.length }
+	//			edges = { (c.nodes[i] -> c.nodes[c.targets[k]]) |
+	//					  c.offsets[i] <= k < c.offsets[i + 1] }
+	//
+	// Representation Invariant:
+	//  * c.ids.get(c.nodes[i]) == i for every i
+	//  * c.offsets.length == c.nodes.length + 1 && c.offsets[0] == 0 &&
+	//    c.offsets is non-decreasing && c.offsets[c.nodes.length] == c.targets.length
+	//  * 0 <= c.targets[k] < c.nodes.length for every k
+
+	/**
+	 * @requires every child of a node in <code>adjacency</code> is itself a
+	 * key of <code>adjacency</code>
+	 * @effects constructs a CompactGraph with the nodes and edges of
+	 * <code>adjacency</code>
+	 */
+	CompactGraph(Map<N, ? extends Collection<N>> adjacency) {
+		int size = adjacency.size();
+		nodes = new Object[size];
+		ids = new HashMap<N,Integer>(2 * size);
+		offsets = new int[size + 1];
+
+		int id = 0;
+		int edges = 0;
+		for (Map.Entry<N, ? extends Collection<N>> entry : adjacency.entrySet()) {
+			nodes[id] = entry.getKey();
+			ids.put(entry.getKey(), id);
+			edges += entry.getValue().size();
+			offsets[++id] = edges;
+		}
+
+		targets = new int[edges];
+		id = 0;
+		for (Collection<N> children : adjacency.values()) {
+			int k = offsets[id++];
+			for (N child : children) {
+				targets[k++] = ids.get(child);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of nodes in this
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * @return the id of <code>node</code>, or -1 if it is not a node in this
+	 */
+	public int id(N node) {
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @requires 0 <= id < size()
+	 * @return the node with id <code>id</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public N node(int id) {
+		return (N) nodes[id];
+	}
+
+	/**
+	 * @return the set of nodes in this. The set must not be modified.
+	 */
+	public Set<N> listNodes() {
+		return ids.keySet();
+	}
+
+	/**
+	 * @requires 0 <= id < size()
+	 * @return the position of the first child of the node with id
+	 * <code>id</code>
+	 */
+	public int childStart(int id) {
+		return offsets[id];
+	}
+
+	/**
+	 * @requires 0 <= id < size()
+	 * @return the position just past the last child of the node with id
+	 * <code>id</code>
+	 */
+	public int childEnd(int id) {
+		return offsets[id + 1];
+	}
+
+	/**
+	 * @requires childStart(i) <= position < childEnd(i) for some node id i
+	 * @return the id of the child at <code>position</code>
+	 */
+	public int child(int position) {
+		return targets[position];
+	}
+}
@@ -0,0 +1,244 @@
+package org.retardants.path;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+import org.retardants.adt.Tile;
+
+/**
+ * A DistanceField holds, for every tile of the map, the number of steps to the
+ * nearest of a set of source tiles, the neighboring tile one step closer to
+ * that source and the source itself.
+ *
+ * Since every step costs 1, the field is filled by a single breadth-first
+ * search started from all sources at once, which takes time linear in the
+ * number of reached tiles. All state lives in primitive arrays indexed by the
+ * flat tile index of Ants, allocated once; a generation stamp tells which
+ * entries belong to the latest search, so nothing is cleared between calls.
+ */
+public class DistanceField {
+
+    /** Distance of tiles not reached by the latest search. */
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final Ants ants;
+
+    private final int[] distance;
+    private final int[] parent;
+    private final int[] source;
+    private final byte[] step;
+    private final int[] visited;
+    private final int[] queue;
+    private int generation = 0;
+
+    /**
+     * Constructs a new DistanceField for the map of <code>ants</code>, with
+     * no tile reached.
+     */
+    public DistanceField(Ants ants) {
+        int size = ants.getRows() * ants.getCols();
+        this.ants = ants;
+        this.distance = new int[size];
+        this.parent = new int[size];
+        this.source = new int[size];
+        this.step = new byte[size];
+        this.visited = new int[size];
+        this.queue = new int[size];
+    }
+
+    /**
+     * Fills this field from the given sources, going around water, up to
+     * <code>maxDistance</code> steps away from them.
+     *
+     * @return the number of tiles reached
+     */
+    public int compute(Collection<Tile> sources, int maxDistance) {
+        int count = 0;
+        for (Tile tile : sources) {
+            queue[count++] = ants.index(tile);
+        }
+        return search(count, maxDistance);
+    }
+
+    /**
+     * Fills this field from the first <code>count</code> flat indices of
+     * <code>sources</code>, going around water, up to
+     * <code>maxDistance</code> steps away from them.
+     *
+     * @return the number of tiles reached
+     */
+    public int compute(int[] sources, int count, int maxDistance) {
+        System.arraycopy(sources, 0, queue, 0, count);
+        return search(count, maxDistance);
+    }
+
+    /*
+     * Breadth-first search from the first count entries of the queue. The
+     * queue is a ring buffer as large as the map; since every tile is queued
+     * at most once per search it can never overflow.
+     */
+    private int search(int count, int maxDistance) {
+        if (++generation == 0) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+        int stamp = generation;
+        int capacity = queue.length;
+        int[] neighbors = ants.getNeighbors();
+        long[] water = ants.getLayer(Ilk.WATER);
+
+        int head = 0;
+        int tail = 0;
+        for (int k = 0; k < count; k++) {
+            int cell = queue[k];
+            if (visited[cell] == stamp) {
+                continue;
+            }
+            visited[cell] = stamp;
+            distance[cell] = 0;
+            parent[cell] = cell;
+            source[cell] = cell;
+            step[cell] = -1;
+            queue[tail++] = cell;
+        }
+        int reached = tail;
+
+        while (head != tail) {
+            int cell = queue[head];
+            if (++head == capacity) {
+                head = 0;
+            }
+            int nextDistance = distance[cell] + 1;
+            if (nextDistance > maxDistance) {
+                continue;
+            }
+            for (int aim = 0; aim < 4; aim++) {
+                int next = neighbors[cell * 4 + aim];
+                if (visited[next] == stamp
+                        || (water[next >>> 6] & (1L << next)) != 0) {
+                    continue;
+                }
+                visited[next] = stamp;
+                distance[next] = nextDistance;
+                parent[next] = cell;
+                source[next] = source[cell];
+                // Aims are ordered clockwise, so the opposite one is two away.
+                step[next] = (byte)((aim + 2) & 3);
+                queue[tail] = next;
+                if (++tail == capacity) {
+                    tail = 0;
+                }
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Returns the tiles reached by the latest search in the order they were
+     * reached, ie. by increasing distance.
+     *
+     * @requires 0 <= k < the number of tiles reached by the latest search
+     * @return the flat index of the k-th tile reached
+     */
+    public int reached(int k) {
+        // Every tile is queued once per search, starting at the front of the
+        // queue, so the ring buffer never wraps and still holds them all.
+        return queue[k];
+    }
+
+    /**
+     * @return true iff the tile with flat index <code>index</code> was reached
+     *         by the latest search
+     */
+    public boolean isReached(int index) {
+        return visited[index] == generation;
+    }
+
+    /**
+     * @return true iff <code>tile</code> was reached by the latest search
+     */
+    public boolean isReached(Tile tile) {
+        return isReached(ants.index(tile));
+    }
+
+    /**
+     * @return the number of steps from the tile with flat index
+     *         <code>index</code> to its nearest source, or UNREACHED
+     */
+    public int getDistance(int index) {
+        return isReached(index) ? distance[index] : UNREACHED;
+    }
+
+    /**
+     * @return the number of steps from <code>tile</code> to its nearest
+     *         source, or UNREACHED
+     */
+    public int getDistance(Tile tile) {
+        return getDistance(ants.index(tile));
+    }
+
+    /**
+     * @requires the tile with flat index <code>index</code> was reached
+     * @return the flat index of the tile one step closer to the nearest
+     *         source, or <code>index</code> itself if it is a source
+     */
+    public int getParent(int index) {
+        return parent[index];
+    }
+
+    /**
+     * @requires <code>tile</code> was reached
+     * @return the tile one step closer to the nearest source, or
+     *         <code>tile</code> itself if it is a source
+     */
+    public Tile getParent(Tile tile) {
+        return ants.tileAt(parent[ants.index(tile)]);
+    }
+
+    /**
+     * @requires the tile with flat index <code>index</code> was reached
+     * @return the flat index of the source nearest to <code>index</code>
+     */
+    public int getSource(int index) {
+        return source[index];
+    }
+
+    /**
+     * @requires <code>tile</code> was reached
+     * @return the source nearest to <code>tile</code>
+     */
+    public Tile getSource(Tile tile) {
+        return ants.tileAt(source[ants.index(tile)]);
+    }
+
+    /**
+     * @return the direction of the first step from the tile with flat index
+     *         <code>index</code> towards its nearest source, or null if it is
+     *         a source or was not reached
+     */
+    public Aim getDirection(int index) {
+        if (!isReached(index) || step[index] < 0) {
+            return null;
+        }
+        return AIMS[step[index]];
+    }
+
+    /**
+     * @return the direction of the first step from <code>tile</code> towards
+     *         its nearest source, or null if <code>tile</code> is a source or
+     *         was not reached
+     */
+    public Aim getDirection(Tile tile) {
+        int index = ants.index(tile);
+        if (!isReached(index) || step[index] < 0) {
+            return null;
+        }
+        return AIMS[step[index]];
+    }
+}
@@ -1,5 +1,6 @@
 package org.retardants.path;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -31,6 +32,7 @@ public class Graph<N> {
 	
 	private final Map<N,HashSet<N>> nodes;
 	private final boolean check = false;
+	private CompactGraph<N> compiled = null;
 
 	// Abstraction Function:
 	//   AF(c) = a graph G such that
@@ -44,6 +46,7 @@ public class Graph<N> {
 	//  * no two nodes are the same
 	//  * no two children are the same
 	//  * if n is a child of some node, then n is a node itself (in this)
+	//  * compiled == null or compiled has the same nodes and edges as this
 
 	
 	/**
@@ -80,6 +83,7 @@ public class Graph<N> {
 		checkRep();
 		if (node != null && !(nodes.containsKey(node))) {
 			nodes.put(node, new HashSet<N>());
+			compiled = null;
 		}
 		checkRep();
 	}
@@ -96,7 +100,9 @@ public class Graph<N> {
 	public void addEdge(N parent, N child) {
 		checkRep();
 		if (nodes.containsKey(parent) && nodes.containsKey(child)) {
-			nodes.get(parent).add(child);
+			if (nodes.get(parent).add(child)) {
+				compiled = null;
+			}
 		}
 		checkRep();
 	}
@@ -138,6 +144,37 @@ public class Graph<N> {
 		return out;
 	}
 	
+	/**
+	 * Returns a read-only view of the set of nodes which form an edge with
+	 * <code>node</code>. Unlike listChildren, no copy is made, so this is the
+	 * method to use when walking the Graph.
+	 * 
+	 * @return sequence of nodes to which <code>node</code> is connected to, or
+	 * an empty set if <code>node</code> is not a node in this.
+	 */
+	public Set<N> children(N node) {
+		HashSet<N> children = nodes.get(node);
+		if (children == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(children);
+	}
+	
+	/**
+	 * Returns an immutable copy of this Graph in compressed sparse row form,
+	 * which can be searched without any allocation. The copy is built once
+	 * and reused until this Graph changes.
+	 * 
+	 * @return a CompactGraph with the same nodes and edges as this
+	 */
+	public CompactGraph<N> compile() {
+		checkRep();
+		if (compiled == null) {
+			compiled = new CompactGraph<N>(nodes);
+		}
+		return compiled;
+	}
+	
 	/**
 	 * Checks that the representation invariant holds
 	 */
@@ -0,0 +1,19 @@
+package org.retardants.path;
+
+/**
+ * A Heuristic estimates the cost of the cheapest path between two nodes, to
+ * guide the search of a PathFinder towards its goals.
+ *
+ * For PathFinder to return shortest paths the estimate must be admissible,
+ * ie. never larger than the true cost, and consistent, ie. for every edge
+ * (a->b), estimate(a, g) <= cost of stepping onto b + estimate(b, g).
+ */
+public interface Heuristic<N> {
+
+    /**
+     * @requires from, to != null
+     * @return a lower bound on the cost of any path from <code>from</code>
+     *         to <code>to</code>
+     */
+    double estimate(N from, N to);
+}
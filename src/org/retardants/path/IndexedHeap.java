@@ -0,0 +1,167 @@
+package org.retardants.path;
+
+import java.util.Arrays;
+
+/**
+ * An IndexedHeap is a binary min-heap of integer ids keyed by doubles, which
+ * also knows where each id sits in the heap. This lets the key of an id
+ * already in the heap be lowered in O(log n), instead of adding a duplicate
+ * entry or scanning the heap for it.
+ *
+ * Ids must be non-negative; the heap grows to fit the largest id pushed.
+ *
+ * @specfield entries : set // pairs (id, key), with at most one pair per id
+ */
+class IndexedHeap {
+
+    private int[] heap;
+    private int[] position;
+    private double[] keys;
+    private int size = 0;
+
+    // Representation Invariant:
+    //  * heap[0..size) holds the ids in the heap, and for every 0 < i < size,
+    //    keys[heap[(i - 1) / 2]] <= keys[heap[i]]
+    //  * position[heap[i]] == i for 0 <= i < size, and position[id] == -1 for
+    //    every id not in the heap
+
+    /**
+     * @effects constructs an empty IndexedHeap sized for ids below
+     *          <code>capacity</code>
+     */
+    public IndexedHeap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * @return true iff there are no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true iff there is an entry for <code>id</code>
+     */
+    public boolean contains(int id) {
+        return id < position.length && position[id] >= 0;
+    }
+
+    /**
+     * @modifies entries
+     * @effects adds (id, key) if there is no entry for <code>id</code>, or
+     *          lowers the key of its entry to <code>key</code> if that is
+     *          smaller than the current one
+     * @return true iff entries changed
+     */
+    public boolean push(int id, double key) {
+        if (id >= position.length) {
+            grow(id + 1);
+        }
+        int i = position[id];
+        if (i < 0) {
+            i = size++;
+            heap[i] = id;
+            position[id] = i;
+        } else if (key >= keys[id]) {
+            return false;
+        }
+        keys[id] = key;
+        siftUp(i);
+        return true;
+    }
+
+    /**
+     * @requires !isEmpty()
+     * @return the key of the entry with the smallest key
+     */
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * @requires !isEmpty()
+     * @modifies entries
+     * @effects removes the entry with the smallest key
+     * @return the id of the removed entry
+     */
+    public int poll() {
+        int min = heap[0];
+        position[min] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * @modifies entries
+     * @effects removes all entries
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        double key = keys[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key) {
+                break;
+            }
+            heap[i] = parentId;
+            position[parentId] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        double key = keys[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            int childId = heap[child];
+            if (key <= keys[childId]) {
+                break;
+            }
+            heap[i] = childId;
+            position[childId] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, 2 * position.length);
+        int old = position.length;
+        heap = Arrays.copyOf(heap, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        position = Arrays.copyOf(position, capacity);
+        Arrays.fill(position, old, capacity, -1);
+    }
+}
@@ -0,0 +1,31 @@
+package org.retardants.path;
+
+import org.retardants.adt.Tile;
+
+/**
+ * Estimates the number of steps between two tiles of a toroidal map, on which
+ * every step moves one row or one column and wraps around the edges. This is
+ * admissible and consistent for paths in which every tile costs 1, like
+ * TilePath.
+ */
+public class ManhattanHeuristic implements Heuristic<Tile> {
+
+    private final int rows;
+    private final int cols;
+
+    /**
+     * @effects constructs a ManhattanHeuristic for a map of
+     *          <code>rows</code> by <code>cols</code> tiles
+     */
+    public ManhattanHeuristic(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    @Override
+    public double estimate(Tile from, Tile to) {
+        int rowDelta = Math.abs(from.getRow() - to.getRow());
+        int colDelta = Math.abs(from.getCol() - to.getCol());
+        return Math.min(rowDelta, rows - rowDelta) + Math.min(colDelta, cols - colDelta);
+    }
+}
@@ -1,8 +1,7 @@
 package org.retardants.path;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * A NodeCountingPath characterizes a path of WeightedNodes.  The cost
@@ -31,7 +30,8 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
     //  RI(c) = 
     //   (c.node != null) &&
     //   (c.path == null) ==> (c.cost == 1) &&
-    //   (c.path != null) ==> (c.cost == 1 + c.path.cost)
+    //   (c.path != null) ==> (c.cost == 1 + c.path.cost) &&
+    //   (c.hash == hash code of the sequence of nodes, see hashCode())
     //
 
     //
@@ -67,6 +67,8 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
     private final NodeCountingPath path;
     /** The cost of this NodeCountingPath (that is, its length). */
     private final int cost;
+    /** The hash code of this NodeCountingPath, computed once. */
+    private final int hash;
   
 
     /**
@@ -93,8 +95,10 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
         this.path = path;
         if (path != null) {
             this.cost = 1 + path.cost;
+            this.hash = node.hashCode() + 13 * path.hash;
         } else {
             this.cost = 1;
+            this.hash = node.hashCode();
         }
     }
 
@@ -112,13 +116,14 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
 
     // Specified by Path interface (which extends Iterable)
     public Iterator<WeightedNode> iterator() {
-        // reverse the linked list, so that elements are returned in order
+        // fill an array from its end, so that elements are returned in order
         // from start to end of the path.
-        List<WeightedNode> accumulator = new LinkedList<WeightedNode>();
+        WeightedNode[] elements = new WeightedNode[cost];
+        int i = elements.length;
         for (NodeCountingPath cur = this; cur!=null; cur = cur.path) {
-            accumulator.add(0, cur.end());
+            elements[--i] = cur.end();
         }
-        return accumulator.iterator();
+        return Arrays.asList(elements).iterator();
     }
 
     /**
@@ -152,16 +157,27 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
      * @return true iff wnp.elements is the same sequence as this.elements
      **/
     public boolean equals(NodeCountingPath wnp) {
-        return (wnp != null) &&
-            this.node.equals(wnp.node) && 
-            (this.path == null ? wnp.path==null : this.path.equals(wnp.path));
+        if (wnp == null || wnp.cost != this.cost || wnp.hash != this.hash) {
+            return false;
+        }
+        // Same length, so both paths run out of nodes at the same time.
+        for (NodeCountingPath a = this, b = wnp; a != null; a = a.path, b = b.path) {
+            if (a == b) {
+                return true; // shared prefix
+            }
+            if (!a.node.equals(b.node)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * @return a valid hashcode for this. 
      **/
     public int hashCode() {
-        return node.hashCode() + (this.path==null ? 0 : 13 * path.hashCode());
+        // node.hashCode() + (path == null ? 0 : 13 * path.hashCode())
+        return hash;
     }
 
 
@@ -1,67 +1,228 @@
 package org.retardants.path;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
- * The PathFinder class simply has 1 method that is used to calculate the lowest
- * cost path between two sets of points.
+ * The PathFinder class calculates lowest cost paths between sets of nodes of
+ * a Graph. Searches are guided by an optional Heuristic (A*), and fall back
+ * to Dijkstra's algorithm without one.
+ *
+ * Searches run on the CompactGraph form of a Graph, whose dense node ids
+ * index the search state directly. The frontier is an IndexedHeap of those
+ * ids, so finding a cheaper path to a node lowers its priority in place and
+ * every node is expanded at most once.
+ *
+ * The search state is kept by the PathFinder and reused from search to
+ * search; each search is numbered, and an entry only counts if it is stamped
+ * with the number of the current search, so a short search on a large graph
+ * costs no allocation or clearing of per-node arrays. A PathFinder therefore
+ * runs one search at a time.
  */
 public class PathFinder<N, P extends Path<N,P>> {
-	
-	// No fields
-	
+
+	private final Heuristic<N> heuristic;
+
+	/* Search state by node id, valid iff the matching stamp is the current search */
+	private Object[] paths = new Object[0];
+	private int[] pathStamps = new int[0];
+	private int[] finishedStamps = new int[0];
+	private double[] estimates = new double[0];
+	private int[] estimateStamps = new int[0];
+	private final IndexedHeap frontier = new IndexedHeap(1);
+	private int generation = 0;
+
+	/**
+	 * @effects constructs a PathFinder without a heuristic
+	 */
 	public PathFinder() {
+		this(null);
+	}
+
+	/**
+	 * @effects constructs a PathFinder guided by <code>heuristic</code>, which
+	 * must be admissible and consistent for the paths searched. A null
+	 * heuristic estimates every cost as 0.
+	 */
+	public PathFinder(Heuristic<N> heuristic) {
+		this.heuristic = heuristic;
 	}
-	
+
+	/**
+	 * Returns the shortest path from the ending node of <code>origin</code> to
+	 * each node in <code>goals</code> that can be reached from it.
+	 *
+	 * @requires graph,origin,goals != null
+	 * @return a set holding, for every reachable node in <code>goals</code>,
+	 * the lowest cost extension of <code>origin</code> that ends at it
+	 */
 	public Set<P> pathPaths(Graph<N> graph, P origin, Set<N> goals) {
-	    // Queue of paths to 
-	    PriorityQueue<P> active = new PriorityQueue<P>();
-	    active.add(origin);
-	    
-	    
-	    return null;
+		return pathPaths(graph.compile(), origin, goals);
 	}
-	
+
+	/**
+	 * Same as pathPaths(Graph, P, Set), on an already compiled graph.
+	 */
+	public Set<P> pathPaths(CompactGraph<N> graph, P origin, Set<N> goals) {
+		// With several goals an estimate towards the nearest one says nothing
+		// about the others, so this is a plain Dijkstra search.
+		Search search = new Search(graph, goals, false);
+		search.offer(origin);
+
+		Set<P> results = new HashSet<P>();
+		P path;
+		while (results.size() < goals.size() && (path = search.next()) != null) {
+			if (goals.contains(path.end())) {
+				results.add(path);
+			}
+			search.expand(path);
+		}
+		return results;
+	}
+
 	/**
-	 * Returns the shortest path between the ending node of any path 
+	 * Returns the shortest path between the ending node of any path
 	 * in <code>starts</code> to any node in <code>goals</code>.
-	 * 
+	 *
 	 * @requires graph,starts,goals != null
 	 * @return the Path with the lowest cost between a node in <code>starts</code>
 	 * and a node in <code>goals</code>. If no path exists, throws an error
 	 */
 	public P findPath(Graph<N> graph, Set<P> starts, Set<N> goals) throws NoSuchElementException {
-	      // The priority queue contains nodes with priority equal to the cost
-	      // of the shortest path to reach that node.  Initially it contains 
-	      // the start nodes.
-	      PriorityQueue<P> active = new PriorityQueue<P>(starts);
-
-	      // The set of finished nodes are those for which we know the shortest paths
-	      // from starts and whose children we have already examined.
-	      Set<N> finished = new HashSet<N>();
-
-	      while (!active.isEmpty()) {
-	        // queueMin is the element of active with shortest path
-	        P queueMin = active.remove();
-
-	        if (goals.contains(queueMin.end())) {
-	            return queueMin;
-	        }
-
-	        // iterate over edges (queueMin, c) in queueMin.edges
-	        for (N node: graph.listChildren(queueMin.end())) {
-	        	P cpath = queueMin.extend(node);
-	        	if (!finished.contains(node) && !active.contains(node)) {
-	        		active.add(cpath); // should have priority cpath's cost
-	        	}
-	        }
-	        
-	        finished.add(queueMin.end());
-	      }
-	      // execution reaches this point only if active becomes empty
-	      throw new NoSuchElementException("No path was found");
+		return findPath(graph.compile(), starts, goals);
+	}
+
+	/**
+	 * Same as findPath(Graph, Set, Set), on an already compiled graph.
+	 */
+	public P findPath(CompactGraph<N> graph, Set<P> starts, Set<N> goals)
+			throws NoSuchElementException {
+		Search search = new Search(graph, goals, heuristic != null);
+		for (P start : starts) {
+			search.offer(start);
+		}
+
+		// The first goal to leave the frontier is the nearest one.
+		P path;
+		while ((path = search.next()) != null) {
+			if (goals.contains(path.end())) {
+				return path;
+			}
+			search.expand(path);
+		}
+		// execution reaches this point only if the frontier becomes empty
+		throw new NoSuchElementException("No path was found");
+	}
+
+	/**
+	 * A single search over the state of the PathFinder: the cheapest known
+	 * path to each node, which nodes are finished and the estimates computed
+	 * so far, all indexed by node id.
+	 */
+	private class Search {
+
+		private final CompactGraph<N> graph;
+		private final Set<N> goals;
+		private final boolean guided;
+
+		private final int stamp;
+		private int current = -1;
+
+		Search(CompactGraph<N> graph, Set<N> goals, boolean guided) {
+			this.graph = graph;
+			this.goals = goals;
+			this.guided = guided;
+			int size = graph.size();
+			if (paths.length < size) {
+				paths = new Object[size];
+				pathStamps = new int[size];
+				finishedStamps = new int[size];
+				estimates = new double[size];
+				estimateStamps = new int[size];
+				generation = 0;
+			}
+			if (++generation == 0) {
+				Arrays.fill(pathStamps, 0);
+				Arrays.fill(finishedStamps, 0);
+				Arrays.fill(estimateStamps, 0);
+				generation = 1;
+			}
+			this.stamp = generation;
+			frontier.clear();
+		}
+
+		/**
+		 * Makes <code>path</code> the path to its ending node, unless that node
+		 * is finished or a path at most as expensive is known already. Paths
+		 * ending outside the graph are ignored.
+		 */
+		void offer(P path) {
+			int id = graph.id(path.end());
+			if (id >= 0) {
+				offer(path, id);
+			}
+		}
+
+		private void offer(P path, int id) {
+			P best = path(id);
+			if (best != null && best.cost() <= path.cost()) {
+				return;
+			}
+			paths[id] = path;
+			pathStamps[id] = stamp;
+			frontier.push(id, path.cost() + estimate(id));
+		}
+
+		/**
+		 * Finishes the cheapest node of the frontier.
+		 *
+		 * @return the shortest path to that node, or null if the frontier is
+		 * empty
+		 */
+		P next() {
+			if (frontier.isEmpty()) {
+				return null;
+			}
+			current = frontier.poll();
+			finishedStamps[current] = stamp;
+			return path(current);
+		}
+
+		/**
+		 * Offers the extension of <code>path</code> to every child of its
+		 * ending node that is not finished yet.
+		 *
+		 * @requires <code>path</code> is the path last returned by next()
+		 */
+		void expand(P path) {
+			for (int k = graph.childStart(current), end = graph.childEnd(current); k < end; k++) {
+				int child = graph.child(k);
+				if (finishedStamps[child] != stamp) {
+					offer(path.extend(graph.node(child)), child);
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private P path(int id) {
+			return pathStamps[id] == stamp ? (P) paths[id] : null;
+		}
+
+		private double estimate(int id) {
+			if (!guided) {
+				return 0.0;
+			}
+			if (estimateStamps[id] != stamp) {
+				double min = goals.isEmpty() ? 0.0 : Double.POSITIVE_INFINITY;
+				for (N goal : goals) {
+					min = Math.min(min, heuristic.estimate(graph.node(id), goal));
+				}
+				estimates[id] = min;
+				estimateStamps[id] = stamp;
+			}
+			return estimates[id];
+		}
 	}
 }
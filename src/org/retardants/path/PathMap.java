@@ -1,5 +1,6 @@
 package org.retardants.path;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -7,6 +8,7 @@ import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 
+import org.retardants.Log;
 import org.retardants.adt.Aim;
 import org.retardants.adt.Ants;
 import org.retardants.adt.Tile;
@@ -20,14 +22,14 @@ public class PathMap {
         // Add nodes
         for (int row = 0; row < ants.getRows(); row++) {
             for (int col = 0; col < ants.getCols(); col++) {
-                map.addNode(new Tile(row, col));
+                map.addNode(ants.tileAt(row, col));
             }
         }
         
         // Add edges
         for (int row = 0; row < ants.getRows(); row++) {
             for (int col = 0; col < ants.getCols(); col++) {
-                Tile tile = new Tile(row, col);
+                Tile tile = ants.tileAt(row, col);
                 for (Aim aim : Aim.values()) {
                     map.addEdge(tile, ants.getTile(tile, aim));
                 }
@@ -37,6 +39,19 @@ public class PathMap {
         // Want a map of origin -> path(origin, goal)
     }
     
+    // Fills field with the distance from every tile to its nearest origin, in a
+    // single breadth-first sweep over the map (rather than one search per
+    // origin). Tiles further than maxDistance steps are left unreached.
+    public static DistanceField findDistances(DistanceField field, Collection<Tile> origins,
+            int maxDistance) {
+        int reached = field.compute(origins, maxDistance);
+        if (Log.isDebug(Log.Subsystem.PATH)) {
+            Log.debug(Log.Subsystem.PATH, "Distance field from " + origins.size()
+                    + " origins reached " + reached + " tiles");
+        }
+        return field;
+    }
+    
     // Returns a path from origin->goal for each goal provided.
     public static Map<Tile, Set<TilePath>> findBestPaths(Ants ants, Tile origin, Set<Tile> goals,
             long maxTime) {
@@ -59,7 +74,7 @@ public class PathMap {
         while (!active.isEmpty()) {
             // Check time and return if necessary
             if ((System.currentTimeMillis() - start) > maxTime) {
-                System.err.println("Time elapsed for path-finding!");
+                Log.warn(Log.Subsystem.PATH, "Time elapsed for path-finding!");
                 return results;
             }
             
@@ -97,7 +112,7 @@ public class PathMap {
         }
         
         if (goals.size() < results.size()) {
-            System.err.println("Failed to find paths for some goals");
+            Log.warn(Log.Subsystem.PATH, "Failed to find paths for some goals");
         }
         
         return results;
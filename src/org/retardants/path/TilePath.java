@@ -1,8 +1,7 @@
 package org.retardants.path;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 
 import org.retardants.adt.Tile;
 
@@ -11,6 +10,7 @@ public class TilePath implements Path<Tile, TilePath> {
     private final Tile node;
     private final TilePath path;
     private final int cost;
+    private final Tile start;
     
     public TilePath(Tile node) {
         this(node, null);
@@ -24,8 +24,10 @@ public class TilePath implements Path<Tile, TilePath> {
         this.path = path;
         if (path != null) {
             this.cost = 1 + path.cost;
+            this.start = path.start;
         } else {
             this.cost = 1;
+            this.start = node;
         }
     }
     
@@ -40,11 +42,7 @@ public class TilePath implements Path<Tile, TilePath> {
     }
     
     public Tile start() {
-        if (path == null) {
-            return node;
-        } else {
-            return path.start();
-        }
+        return start;
     }
 
     @Override
@@ -59,21 +57,23 @@ public class TilePath implements Path<Tile, TilePath> {
 
     @Override
     public Iterator<Tile> iterator() {
-        // reverse the linked list, so that elements are returned in order
+        // fill an array from its end, so that elements are returned in order
         // from start to end of the path.
-        List<Tile> accumulator = new LinkedList<Tile>();
+        Tile[] elements = new Tile[cost];
+        int i = elements.length;
         for (TilePath cur = this; cur!=null; cur = cur.path) {
-            accumulator.add(0, cur.end());
+            elements[--i] = cur.end();
         }
-        return accumulator.iterator();
+        return Arrays.asList(elements).iterator();
     }
     
     public Iterator<Tile> reverseIterator() {
-        List<Tile> accumulator = new LinkedList<Tile>();
+        Tile[] elements = new Tile[cost];
+        int i = 0;
         for (TilePath cur = this; cur!=null; cur = cur.path) {
-            accumulator.add(cur.end());
+            elements[i++] = cur.end();
         }
-        return accumulator.iterator();
+        return Arrays.asList(elements).iterator();
     }
     
     @Override
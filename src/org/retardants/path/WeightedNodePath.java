@@ -1,8 +1,7 @@
 package org.retardants.path;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * A WeightedNodePath characterizes a path of WeightedNodes.  The cost
@@ -27,7 +26,10 @@ public class WeightedNodePath implements Path<WeightedNode, WeightedNodePath> {
     //  RI(c) = 
     //   (c.node != null) &&
     //   (c.path == null) ==> (c.cost == c.node.cost) &&
-    //   (c.path != null) ==> (c.cost == c.node.cost + c.path.cost)
+    //   (c.path != null) ==> (c.cost == c.node.cost + c.path.cost) &&
+    //   (c.path == null) ==> (c.length == 1) &&
+    //   (c.path != null) ==> (c.length == 1 + c.path.length) &&
+    //   (c.hash == hash code of the sequence of nodes, see hashCode())
     //
 
     //
@@ -63,6 +65,10 @@ public class WeightedNodePath implements Path<WeightedNode, WeightedNodePath> {
     private final WeightedNodePath path;
     /** The cost of this WeightedNodePath. */
     private final int cost;
+    /** The number of nodes in this WeightedNodePath. */
+    private final int length;
+    /** The hash code of this WeightedNodePath, computed once. */
+    private final int hash;
   
 
     /**
@@ -89,8 +95,12 @@ public class WeightedNodePath implements Path<WeightedNode, WeightedNodePath> {
         this.path = path;
         if (path != null) {
             this.cost = node.cost + path.cost;
+            this.length = 1 + path.length;
+            this.hash = node.hashCode() + 13 * path.hash;
         } else {
             this.cost = node.cost;
+            this.length = 1;
+            this.hash = node.hashCode();
         }
     }
 
@@ -107,13 +117,14 @@ public class WeightedNodePath implements Path<WeightedNode, WeightedNodePath> {
 
     // Specified by Path interface (which extends Iterable)
     public Iterator<WeightedNode> iterator() {
-        // reverse the linked list, so that elements are returned in order
+        // fill an array from its end, so that elements are returned in order
         // from start to end of the path.
-        List<WeightedNode> accumulator = new LinkedList<WeightedNode>();
+        WeightedNode[] elements = new WeightedNode[length];
+        int i = elements.length;
         for (WeightedNodePath cur = this; cur!=null; cur = cur.path) {
-            accumulator.add(0, cur.end());
+            elements[--i] = cur.end();
         }
-        return accumulator.iterator();
+        return Arrays.asList(elements).iterator();
     }
 
     /**
@@ -147,16 +158,27 @@ public class WeightedNodePath implements Path<WeightedNode, WeightedNodePath> {
      * @return true iff wnp.elements is the same sequence as this.elements
      **/
     public boolean equals(WeightedNodePath wnp) {
-        return (wnp != null) &&
-            this.node.equals(wnp.node) && 
-            (this.path == null ? wnp.path==null : this.path.equals(wnp.path));
+        if (wnp == null || wnp.length != this.length || wnp.hash != this.hash) {
+            return false;
+        }
+        // Same length, so both paths run out of nodes at the same time.
+        for (WeightedNodePath a = this, b = wnp; a != null; a = a.path, b = b.path) {
+            if (a == b) {
+                return true; // shared prefix
+            }
+            if (!a.node.equals(b.node)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * @return a valid hashcode for this. 
      **/
     public int hashCode() {
-        return node.hashCode() + (this.path==null ? 0 : 13 * path.hashCode());
+        // node.hashCode() + (path == null ? 0 : 13 * path.hashCode())
+        return hash;
     }
 
 
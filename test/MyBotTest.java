@@ -0,0 +1,38 @@
+import static org.junit.Assert.assertEquals;
+
+import org.retardants.adt.Strategy;
+import org.junit.Test;
+
+public class MyBotTest {
+
+    private static final int ROWS = 8;
+    private static final int COLS = 60;
+
+    /*
+     * Plays a turn with my only ant at (row, col), and returns its orders.
+     */
+    private static String playTurn(MyBot bot, int row, int col) {
+        bot.beforeUpdate();
+        bot.addAnt(row, col, 0);
+        bot.afterUpdate();
+        bot.doTurn();
+        String orders = bot.getAnts().getOrders().toString();
+        bot.getAnts().getOrders().clear();
+        return orders;
+    }
+
+    @Test
+    public void testExploresTowardsNearestFrontier() {
+        MyBot bot = new MyBot();
+        bot.setup(3000, 1000, ROWS, COLS, 100, 77, 5, 1);
+        bot.explorationStrategy = Strategy.EXPLORATION_DIFFUSION;
+
+        // Sight is wider than the map is high, so the ant sees all its rows
+        // and the frontier lies east and west of columns 2 to 30. From column
+        // 20 the east is 8 steps nearer.
+        playTurn(bot, 4, 10);
+        playTurn(bot, 4, 16);
+        playTurn(bot, 4, 22);
+        assertEquals("o 4 20 e\n", playTurn(bot, 4, 20));
+    }
+}
@@ -0,0 +1,72 @@
+package org.retardants;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Tests of log levels and spooling.
+ */
+public class LogTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private String output() {
+        return bytes.toString().replace(System.getProperty("line.separator"), "\n");
+    }
+
+    @After
+    public void restore() {
+        Log.setOutput(System.err);
+        Log.setSpool(0);
+        Log.setLevel(Log.Level.WARN);
+    }
+
+    @Test
+    public void testLevels() {
+        Log.setOutput(new PrintStream(bytes, true));
+        Log.setLevel(Log.Level.WARN);
+        Log.setLevel(Log.Subsystem.FOOD, Log.Level.DEBUG);
+
+        assertTrue(Log.isDebug(Log.Subsystem.FOOD));
+        assertFalse(Log.isTrace(Log.Subsystem.FOOD));
+        assertFalse(Log.isInfo(Log.Subsystem.BATTLE));
+        assertTrue(Log.isEnabled(Log.Subsystem.BATTLE, Log.Level.ERROR));
+        assertEquals(Log.Level.DEBUG, Log.getLevel(Log.Subsystem.FOOD));
+
+        Log.debug(Log.Subsystem.FOOD, "food");
+        Log.debug(Log.Subsystem.BATTLE, "battle");
+        Log.warn(Log.Subsystem.BATTLE, "warning");
+        Log.trace(Log.Subsystem.FOOD, "trace");
+        assertEquals("food\nwarning\n", output());
+    }
+
+    @Test
+    public void testSpool() {
+        Log.setOutput(new PrintStream(bytes, true));
+        Log.setLevel(Log.Level.INFO);
+        Log.setSpool(3);
+        assertTrue(Log.isSpooling());
+
+        for (int i = 1; i <= 5; i++) {
+            Log.info(Log.Subsystem.BOT, "line " + i);
+        }
+        assertEquals("", output());
+        assertEquals(3, Log.getSpooled());
+
+        /* Only the last lines are kept */
+        Log.dumpSpool();
+        assertEquals("(2 earlier log lines dropped)\nline 3\nline 4\nline 5\n", output());
+        assertEquals(0, Log.getSpooled());
+
+        /* A turn that did not overrun drops its lines */
+        bytes.reset();
+        Log.info(Log.Subsystem.BOT, "line 6");
+        Log.clearSpool();
+        Log.dumpSpool();
+        assertEquals("", output());
+    }
+}
@@ -0,0 +1,99 @@
+package org.retardants;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.retardants.TurnBudget.Phase;
+
+/**
+ * Tests of the deadlines and histograms of TurnBudget.
+ */
+public class TurnBudgetTest {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void testDeadlines() {
+        /* 1000ms turns, 100ms margin, shares 1 1 2 5 2 2 1 */
+        TurnBudget budget = new TurnBudget(1000, 100);
+        budget.startTurn(0);
+
+        budget.beginPhase(Phase.PARSE, 0);
+        assertEquals(900 * MS / 14, budget.getDeadline());
+
+        /* Time left over by vision and diffusion flows on to the later phases */
+        budget.beginPhase(Phase.FOOD, 30 * MS);
+        assertEquals(30 * MS + 870 * MS * 5 / 10, budget.getDeadline());
+
+        /* A slow phase cannot take the shares of the later ones... */
+        budget.beginPhase(Phase.BATTLE, 800 * MS);
+        assertEquals(800 * MS, budget.getDeadline());
+
+        /* ...nor the margin */
+        budget.beginPhase(Phase.OUTPUT, 950 * MS);
+        assertEquals(950 * MS, budget.getDeadline());
+        budget.endTurn(960 * MS);
+
+        assertEquals(1, budget.getOverruns(Phase.FOOD));
+        assertEquals(1, budget.getOverruns(Phase.OUTPUT));
+        assertEquals(0, budget.getOverruns(Phase.PARSE));
+        assertEquals(770 * MS, budget.getMaximum(Phase.FOOD));
+        assertEquals(0, budget.getTotal(Phase.VISION));
+    }
+
+    @Test
+    public void testReservedShares() {
+        /* 900ms to share, 900ms / 14 per share */
+        TurnBudget budget = new TurnBudget(1000, 100);
+        budget.startTurn(0);
+        budget.beginPhase(Phase.FOOD, 0);
+        assertEquals(900 * MS * 5 / 10, budget.getDeadline());
+
+        /* Food runs over: the next phase makes up for it... */
+        budget.beginPhase(Phase.BATTLE, 600 * MS);
+        long start = 900 * MS - 900 * MS * 3 / 14;
+        assertEquals(start, budget.getDeadline());
+
+        /* ...and the later ones keep their whole shares */
+        budget.beginPhase(Phase.EXPLORATION, start);
+        assertEquals(start + 900 * MS * 2 / 14, budget.getDeadline());
+        budget.endTurn(start);
+        assertEquals(1, budget.getOverruns(Phase.FOOD));
+        assertEquals(0, budget.getOverruns(Phase.BATTLE));
+    }
+
+    @Test
+    public void testShares() {
+        TurnBudget budget = new TurnBudget(500, 0);
+        for (Phase phase : Phase.values()) {
+            budget.setShare(phase, 1);
+        }
+        budget.setShare(Phase.EXPLORATION, 4);
+        budget.startTurn(0);
+        budget.beginPhase(Phase.EXPLORATION, 0);
+        assertEquals(400 * MS, budget.getDeadline());
+    }
+
+    @Test
+    public void testHistogram() {
+        TurnBudget budget = new TurnBudget(1000, 100);
+        long[] durations = { 0, 1000, 1500, 3 * MS, 3 * MS, 10000 * MS };
+        long now = 0;
+        for (long duration : durations) {
+            budget.startTurn(now);
+            budget.beginPhase(Phase.PARSE, now);
+            now += duration;
+            budget.beginPhase(Phase.VISION, now);
+        }
+        budget.endTurn(now);
+        assertEquals(durations.length, budget.getTurns());
+
+        long[] histogram = budget.getHistogram(Phase.PARSE);
+        assertEquals(1, histogram[0]);              // 0us
+        assertEquals(2, histogram[1]);              // 1us
+        assertEquals(2, histogram[12]);             // 3000us < 2^12
+        assertEquals(1, histogram[histogram.length - 1]); // 2^23us and longer
+        assertEquals(1, budget.getOverruns(Phase.PARSE));
+        assertTrue(budget.toString().contains("PARSE mean "));
+    }
+}
@@ -0,0 +1,94 @@
+package org.retardants.adt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests of what Ants remembers of the map from turn to turn.
+ */
+public class AntsTest {
+
+    /*
+     * Plays the update of a turn, as Bot does.
+     */
+    private static void turn(Ants ants, Tile ant, Tile hill, int owner) {
+        ants.nextTurn();
+        ants.clearMyAnts();
+        ants.clearEnemyAnts();
+        ants.update(Ilk.MY_ANT, ant);
+        if (hill != null) {
+            ants.updateHills(owner, hill);
+        }
+        ants.setVision();
+    }
+
+    @Test
+    public void testMemory() {
+        Ants ants = new Ants(3000, 500, 40, 40, 100, 9, 5, 1);
+        Tile hill = ants.tileAt(5, 5);
+        Tile water = ants.tileAt(6, 7);
+        assertEquals(0, ants.getLastSeen(hill));
+
+        /* Turn 1: the hill and some water come into view */
+        ants.nextTurn();
+        ants.update(Ilk.MY_ANT, ants.tileAt(5, 6));
+        ants.update(Ilk.WATER, water);
+        ants.updateHills(1, hill);
+        ants.setVision();
+        assertEquals(1, ants.getTurn());
+        assertEquals(1, ants.getLastSeen(hill));
+
+        /* Turns 2-3: out of sight, both are remembered */
+        turn(ants, ants.tileAt(20, 20), null, 0);
+        turn(ants, ants.tileAt(20, 21), null, 0);
+        assertTrue(ants.getEnemyHills().contains(hill));
+        assertEquals(Ilk.WATER, ants.getIlk(water));
+        assertEquals(1, ants.getLastSeen(hill));
+        assertEquals(3, ants.getLastSeen(ants.tileAt(20, 21)));
+
+        /* Turn 4: back in view and still standing */
+        turn(ants, ants.tileAt(5, 4), hill, 1);
+        assertTrue(ants.getEnemyHills().contains(hill));
+        assertEquals(4, ants.getLastSeen(hill));
+
+        /* Turn 5: in view but not reported, so razed */
+        turn(ants, ants.tileAt(5, 4), null, 0);
+        assertTrue(ants.getEnemyHills().isEmpty());
+        assertEquals(Ilk.WATER, ants.getIlk(water));
+    }
+
+    @Test
+    public void testLayers() {
+        /* 130 locations, so the last word is partly used */
+        Ants ants = new Ants(3000, 500, 10, 13, 100, 9, 5, 1);
+        Ilk[] expected = new Ilk[130];
+        Arrays.fill(expected, Ilk.LAND);
+        Random r = new Random(5);
+        for (int k = 0; k < 300; k++) {
+            int index = r.nextInt(130);
+            Ilk ilk = Ilk.values()[r.nextInt(Ilk.values().length)];
+            ants.update(ilk, ants.tileAt(index));
+            expected[index] = ilk;
+        }
+
+        long[] mask = new long[3];
+        ants.getUnoccupied(mask);
+        for (int index = 0; index < 130; index++) {
+            assertEquals(expected[index], ants.getIlk(index));
+            assertEquals(expected[index].isPassable(), ants.isPassable(index));
+            assertEquals(expected[index].isUnoccupied(), ants.isUnoccupied(index));
+            assertEquals(expected[index].isUnoccupied(), (mask[index >>> 6] & (1L << index)) != 0);
+        }
+        assertEquals(0, mask[2] >>> (130 & 63));
+
+        ants.clearDeadAnts();
+        ants.clearFood();
+        for (int index = 0; index < 130; index++) {
+            Ilk ilk = expected[index] == Ilk.DEAD || expected[index] == Ilk.FOOD ? Ilk.LAND : expected[index];
+            assertEquals(ilk, ants.getIlk(index));
+        }
+    }
+}
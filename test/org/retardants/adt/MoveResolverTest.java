@@ -0,0 +1,112 @@
+package org.retardants.adt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the move resolver on chains, swaps and conflicts of a few ants.
+ */
+public class MoveResolverTest {
+
+    private static int cell(Ants ants, int row, int col) {
+        return ants.index(ants.tileAt(row, col));
+    }
+
+    @Test
+    public void testChains() {
+        Ants ants = new Ants(0, 0, 10, 10, 0, 0, 0, 0);
+        for (int col = 2; col <= 5; col++) {
+            ants.update(Ilk.MY_ANT, ants.tileAt(3, col));
+        }
+        ants.update(Ilk.MY_ANT, ants.tileAt(7, 2));
+        ants.update(Ilk.MY_ANT, ants.tileAt(7, 3));
+        ants.update(Ilk.FOOD, ants.tileAt(6, 2));
+        MoveResolver moves = new MoveResolver(ants);
+        moves.clear();
+
+        // A chain heading east, led by an ant that moves.
+        assertTrue(moves.propose(cell(ants, 3, 5), Aim.EAST, 1));
+        assertTrue(moves.propose(cell(ants, 3, 4), Aim.EAST, 1));
+        assertTrue(moves.propose(cell(ants, 3, 3), Aim.EAST, 1));
+        assertTrue(moves.isMoving(cell(ants, 3, 3)));
+        assertFalse(moves.isMoving(cell(ants, 3, 2)));
+
+        // Two ants swapping, which is as good as staying.
+        assertTrue(moves.propose(cell(ants, 7, 2), Aim.EAST, 1));
+        assertTrue(moves.propose(cell(ants, 7, 3), Aim.WEST, 1));
+
+        // No ant moves onto food.
+        assertFalse(moves.propose(cell(ants, 7, 2), Aim.NORTH, 1));
+        assertEquals(5, moves.size());
+
+        assertEquals(3, moves.resolve());
+        assertEquals(cell(ants, 3, 6), moves.getDestination(cell(ants, 3, 5)));
+        assertEquals(cell(ants, 3, 4), moves.getDestination(cell(ants, 3, 3)));
+        assertEquals(cell(ants, 3, 2), moves.getDestination(cell(ants, 3, 2)));
+        assertEquals(cell(ants, 7, 2), moves.getDestination(cell(ants, 7, 2)));
+        assertEquals(cell(ants, 7, 3), moves.getDestination(cell(ants, 7, 3)));
+
+        // Once the leader stays, the whole chain stays behind it.
+        moves.clear();
+        assertFalse(moves.isMoving(cell(ants, 3, 3)));
+        moves.propose(cell(ants, 3, 3), Aim.EAST, 1);
+        moves.propose(cell(ants, 3, 4), Aim.EAST, 1);
+        moves.propose(cell(ants, 3, 5), null, 1);
+        assertEquals(0, moves.resolve());
+        assertEquals(cell(ants, 3, 3), moves.getDestination(cell(ants, 3, 3)));
+        assertEquals(cell(ants, 3, 4), moves.getDestination(cell(ants, 3, 4)));
+    }
+
+    @Test
+    public void testScores() {
+        Ants ants = new Ants(0, 0, 10, 10, 0, 0, 0, 0);
+        ants.update(Ilk.MY_ANT, ants.tileAt(5, 4));
+        ants.update(Ilk.MY_ANT, ants.tileAt(5, 6));
+        MoveResolver moves = new MoveResolver(ants);
+        moves.clear();
+
+        // Both want (5, 5): the higher score wins, the other takes its next intent.
+        moves.propose(cell(ants, 5, 4), Aim.EAST, 1);
+        moves.propose(cell(ants, 5, 6), Aim.WEST, 2);
+        moves.propose(cell(ants, 5, 4), Aim.NORTH, 0);
+        assertEquals(2, moves.resolve());
+        assertEquals(cell(ants, 5, 5), moves.getDestination(cell(ants, 5, 6)));
+        assertEquals(cell(ants, 4, 4), moves.getDestination(cell(ants, 5, 4)));
+
+        // On equal scores the first proposed wins.
+        moves.clear();
+        moves.propose(cell(ants, 5, 4), Aim.EAST, 1);
+        moves.propose(cell(ants, 5, 6), Aim.WEST, 1);
+        assertEquals(1, moves.resolve());
+        assertEquals(cell(ants, 5, 5), moves.getDestination(cell(ants, 5, 4)));
+        assertEquals(cell(ants, 5, 6), moves.getDestination(cell(ants, 5, 6)));
+    }
+
+    @Test
+    public void testReserved() {
+        Ants ants = new Ants(0, 0, 10, 10, 0, 0, 0, 0);
+        ants.update(Ilk.MY_ANT, ants.tileAt(5, 4));
+        ants.update(Ilk.MY_ANT, ants.tileAt(2, 2));
+        MoveResolver moves = new MoveResolver(ants);
+        moves.clear();
+        moves.reserve(cell(ants, 5, 5));
+        moves.reserve(cell(ants, 2, 2));
+
+        // No ant moves to a reserved location, but one standing there may stay.
+        moves.propose(cell(ants, 5, 4), Aim.EAST, 2);
+        moves.propose(cell(ants, 5, 4), Aim.SOUTH, 1);
+        moves.propose(cell(ants, 2, 2), null, 1);
+        assertTrue(moves.hasIntents(cell(ants, 5, 4)));
+        assertTrue(moves.hasIntents(cell(ants, 2, 2)));
+        assertEquals(1, moves.resolve());
+        assertEquals(cell(ants, 6, 4), moves.getDestination(cell(ants, 5, 4)));
+        assertEquals(cell(ants, 2, 2), moves.getDestination(cell(ants, 2, 2)));
+
+        // A new turn forgets both.
+        moves.clear();
+        assertFalse(moves.hasIntents(cell(ants, 5, 4)));
+        moves.propose(cell(ants, 5, 4), Aim.EAST, 1);
+        assertEquals(1, moves.resolve());
+        assertEquals(cell(ants, 5, 5), moves.getDestination(cell(ants, 5, 4)));
+    }
+}
@@ -0,0 +1,45 @@
+package org.retardants.adt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Tests of the encoding of orders.
+ */
+public class OrderBufferTest {
+
+    @Test
+    public void testFlush() throws IOException {
+        OrderBuffer orders = new OrderBuffer();
+        orders.add(0, 7, Aim.NORTH);
+        orders.add(123, 4567, Aim.WEST);
+        assertEquals(2, orders.size());
+        assertEquals("o 0 7 n\no 123 4567 w\n", orders.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orders.flush(out);
+        assertEquals("o 0 7 n\no 123 4567 w\ngo\n", out.toString());
+        assertEquals(0, orders.size());
+
+        /* Nothing is left over for the next turn */
+        out.reset();
+        orders.flush(out);
+        assertEquals("go\n", out.toString());
+    }
+
+    @Test
+    public void testGrow() throws IOException {
+        OrderBuffer orders = new OrderBuffer();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            orders.add(i, 2 * i, Aim.SOUTH);
+            expected.append("o " + i + " " + 2 * i + " s\n");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orders.flush(out);
+        assertEquals(expected + "go\n", out.toString());
+    }
+}
@@ -0,0 +1,117 @@
+package org.retardants.adt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the streaming parser against the former String based one, on the
+ * input recorded from a real game. Not a JUnit test: run it by hand with
+ *
+ * <pre>
+ * java org.retardants.adt.SystemInputParserBenchmark [transcript] [runs]
+ * </pre>
+ *
+ * The default transcript, game.input next to this file, is what MyBot was
+ * sent during a 4 player game on random_walk_04p_01 (playgame.py -I).
+ */
+public class SystemInputParserBenchmark {
+
+    private static final String TRANSCRIPT = "test/org/retardants/adt/game.input";
+
+    /**
+     * Counts the updates and turns, and does nothing else.
+     */
+    private static class CountingParser extends AbstractSystemInputParser {
+        int updates = 0;
+        int turns = 0;
+
+        public void setup(int loadTime, int turnTime, int rows, int cols, int turns,
+                int viewRadius2, int attackRadius2, int spawnRadius2) {
+        }
+        public void beforeUpdate() { }
+        public void addWater(int row, int col) { updates++; }
+        public void addAnt(int row, int col, int owner) { updates++; }
+        public void addFood(int row, int col) { updates++; }
+        public void removeAnt(int row, int col, int owner) { updates++; }
+        public void addHill(int row, int col, int owner) { updates++; }
+        public void afterUpdate() { }
+        public void doTurn() { turns++; }
+        @Override
+        public void finishTurn() { }
+    }
+
+    /*
+     * The former parser: a String per line, a List per turn, String.split and
+     * Integer.parseInt per update line. Returns the number of updates.
+     */
+    private static int parseWithStrings(InputStream in) throws IOException {
+        int updates = 0;
+        List<String> input = new ArrayList<String>();
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\r' || c == '\n') {
+                String text = line.toString().toLowerCase().trim();
+                line.setLength(0);
+                if (text.equals("go")) {
+                    for (String update : input) {
+                        String parts[] = update.split(" ");
+                        if (parts.length >= 3 && parts[0].length() == 1) {
+                            updates += Integer.parseInt(parts[1]) + Integer.parseInt(parts[2]) >= 0 ? 1 : 0;
+                        }
+                    }
+                    input.clear();
+                } else if (!text.isEmpty()) {
+                    input.add(text);
+                }
+            } else {
+                line.append((char)c);
+            }
+        }
+        return updates;
+    }
+
+    private static byte[] read(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1 << 16];
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        byte[] bytes = read(args.length > 0 ? args[0] : TRANSCRIPT);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        long best = Long.MAX_VALUE;
+        long bestWithStrings = Long.MAX_VALUE;
+        CountingParser parser = null;
+        int updatesWithStrings = 0;
+        for (int run = 0; run < runs; run++) {
+            parser = new CountingParser();
+            long start = System.nanoTime();
+            parser.readInput(new ByteArrayInputStream(bytes));
+            best = Math.min(best, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            updatesWithStrings = parseWithStrings(new ByteArrayInputStream(bytes));
+            bestWithStrings = Math.min(bestWithStrings, System.nanoTime() - start);
+        }
+        System.out.println(bytes.length + " bytes, " + parser.turns + " turns, "
+                + parser.updates + " updates (" + updatesWithStrings + " with Strings)");
+        System.out.println("best of " + runs + ": " + best / 1000 + "us streaming, "
+                + bestWithStrings / 1000 + "us with Strings");
+    }
+}
@@ -0,0 +1,97 @@
+package org.retardants.adt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tests of the streaming game protocol parser.
+ */
+public class SystemInputParserTest {
+
+    /**
+     * Records every callback as a short line of text.
+     */
+    private static class RecordingParser extends AbstractSystemInputParser {
+        final StringBuilder log = new StringBuilder();
+        int updates = 0;
+
+        public void setup(int loadTime, int turnTime, int rows, int cols, int turns,
+                int viewRadius2, int attackRadius2, int spawnRadius2) {
+            log.append("setup " + loadTime + " " + turnTime + " " + rows + " " + cols + " "
+                    + turns + " " + viewRadius2 + " " + attackRadius2 + " " + spawnRadius2 + "\n");
+        }
+        public void beforeUpdate() { log.append("before\n"); }
+        public void addWater(int row, int col) { updates++; }
+        public void addAnt(int row, int col, int owner) {
+            updates++;
+            log.append("ant " + row + " " + col + " " + owner + "\n");
+        }
+        public void addFood(int row, int col) {
+            updates++;
+            log.append("food " + row + " " + col + "\n");
+        }
+        public void removeAnt(int row, int col, int owner) {
+            updates++;
+            log.append("dead " + row + " " + col + " " + owner + "\n");
+        }
+        public void addHill(int row, int col, int owner) {
+            updates++;
+            log.append("hill " + row + " " + col + " " + owner + "\n");
+        }
+        public void afterUpdate() { log.append("after\n"); }
+        public void doTurn() { log.append("turn\n"); }
+        @Override
+        public void finishTurn() { log.append("go\n"); }
+    }
+
+    /**
+     * Returns at most chunk bytes per read, to split lines across reads.
+     */
+    private static InputStream trickle(String input, final int chunk) {
+        return new ByteArrayInputStream(input.getBytes()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    private static final String GAME =
+        "turn 0\nloadtime 3000\nturntime 1000\nrows 20\ncols 30\nturns 500\n"
+        + "viewradius2 55\nattackradius2 5\nspawnradius2 1\nplayer_seed 42\nready\n"
+        + "turn 1\nF 3 4\na 1 2 0 # my ant\r\n  h 5 6 1  \nd 7 8 1\nw 9 10\nx 1 2\na 1 2\ngo\n"
+        + "turn 2\n\nf 11 12\ngo\n";
+
+    private static final String EXPECTED =
+        "setup 3000 1000 20 30 500 55 5 1\ngo\n"
+        + "before\nfood 3 4\nant 1 2 0\nhill 5 6 1\ndead 7 8 1\nafter\nturn\ngo\n"
+        + "before\nfood 11 12\nafter\nturn\ngo\n";
+
+    @Test
+    public void testParse() throws IOException {
+        RecordingParser parser = new RecordingParser();
+        parser.readInput(trickle(GAME, 1 << 16));
+        assertEquals(EXPECTED, parser.log.toString());
+        assertEquals(6, parser.updates);
+    }
+
+    @Test
+    public void testLinesAcrossReads() throws IOException {
+        for (int chunk = 1; chunk < 8; chunk++) {
+            RecordingParser parser = new RecordingParser();
+            parser.readInput(trickle(GAME, chunk));
+            assertEquals(EXPECTED, parser.log.toString());
+        }
+    }
+
+    @Test
+    public void testLastLineWithoutNewline() throws IOException {
+        RecordingParser parser = new RecordingParser();
+        parser.readInput(trickle(GAME + "turn 3\nf 13 14\ngo", 5));
+        assertEquals(EXPECTED + "before\nfood 13 14\nafter\nturn\ngo\n", parser.log.toString());
+    }
+}
@@ -0,0 +1,97 @@
+package org.retardants.adt;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/**
+ * Tests of the incremental vision of my ants against a full recomputation.
+ */
+public class VisionTest {
+
+    /*
+     * Whether any ant sees (row, col), straight from the definition.
+     */
+    private static boolean[] bruteForce(int rows, int cols, int viewRadius2, int[] ants, int count) {
+        boolean[] visible = new boolean[rows * cols];
+        for (int i = 0; i < count; i++) {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int dr = Math.abs(row - ants[i] / cols);
+                    int dc = Math.abs(col - ants[i] % cols);
+                    dr = Math.min(dr, rows - dr);
+                    dc = Math.min(dc, cols - dc);
+                    if (dr * dr + dc * dc <= viewRadius2) {
+                        visible[row * cols + col] = true;
+                    }
+                }
+            }
+        }
+        return visible;
+    }
+
+    @Test
+    public void testRandomWalk() {
+        int rows = 23;
+        int cols = 31;
+        int viewRadius2 = 55;
+        Vision vision = new Vision(rows, cols, viewRadius2);
+        Random r = new Random(3);
+        int[] ants = new int[20];
+        for (int i = 0; i < ants.length; i++) {
+            ants[i] = r.nextInt(rows * cols);
+        }
+        boolean[] before = new boolean[rows * cols];
+        for (int turn = 0; turn < 100; turn++) {
+            /* Some ants move, some die, some stay */
+            int count = 5 + r.nextInt(ants.length - 5);
+            for (int i = 0; i < count; i++) {
+                if (r.nextBoolean()) {
+                    int row = (ants[i] / cols + r.nextInt(3) - 1 + rows) % rows;
+                    int col = (ants[i] % cols + r.nextInt(3) - 1 + cols) % cols;
+                    ants[i] = row * cols + col;
+                }
+            }
+            vision.update(ants, count);
+
+            boolean[] after = bruteForce(rows, cols, viewRadius2, ants, count);
+            boolean[] expected = before.clone();
+            for (int i = 0; i < vision.getGainedCount(); i++) {
+                int cell = vision.getGained()[i];
+                assertFalse(expected[cell]);
+                expected[cell] = true;
+            }
+            for (int i = 0; i < vision.getLostCount(); i++) {
+                int cell = vision.getLost()[i];
+                assertTrue(expected[cell]);
+                expected[cell] = false;
+            }
+            for (int cell = 0; cell < rows * cols; cell++) {
+                assertEquals(after[cell], vision.isVisible(cell));
+                assertEquals(after[cell], expected[cell]);
+            }
+            before = after;
+        }
+    }
+
+    @Test
+    public void testStandingStill() {
+        Vision vision = new Vision(20, 20, 8);
+        int[] ants = { 0, 55, 55, 210 };
+        vision.update(ants, ants.length);
+        assertEquals(3 * vision.getViewSize(), vision.getGainedCount());
+        assertEquals(1, vision.getCoverage(55)); // the duplicate counts once
+
+        /* Nothing changes, nothing is recomputed */
+        vision.update(new int[] { 210, 0, 55 }, 3);
+        assertEquals(0, vision.getGainedCount());
+        assertEquals(0, vision.getLostCount());
+
+        vision.update(new int[0], 0);
+        assertEquals(3 * vision.getViewSize(), vision.getLostCount());
+        for (int cell = 0; cell < 400; cell++) {
+            assertFalse(vision.isVisible(cell));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.retardants.combat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+
+/**
+ * Tests of the battle partition, and of the search on small battles whose
+ * best moves are known.
+ */
+public class BattleSearchTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void testClusters() {
+        Ants ants = new Ants(0, 0, 30, 30, 0, 0, 5, 0);
+        BattleClusters clusters = new BattleClusters(30, 30, 5);
+        int[] mine = { ants.index(ants.tileAt(2, 2)), ants.index(ants.tileAt(2, 5)),
+                ants.index(ants.tileAt(15, 15)), ants.index(ants.tileAt(1, 12)) };
+        int[] enemies = { ants.index(ants.tileAt(5, 3)), ants.index(ants.tileAt(18, 16)),
+                ants.index(ants.tileAt(29, 12)) };
+        assertEquals(2, clusters.partition(mine, mine.length, enemies, 2));
+
+        // Both of the first two ants can meet the first enemy.
+        assertEquals(clusters.getBattle(0), clusters.getBattle(1));
+        assertEquals(clusters.getBattle(0), clusters.getEnemyBattle(0));
+        assertEquals(2, clusters.getMyCount(clusters.getBattle(0)));
+        assertEquals(1, clusters.getEnemyCount(clusters.getBattle(0)));
+        assertTrue(clusters.getBattle(2) != clusters.getBattle(0));
+        assertEquals(clusters.getBattle(2), clusters.getEnemyBattle(1));
+        assertEquals(-1, clusters.getBattle(3));
+
+        // The map wraps around: row 29 is two rows from row 1.
+        assertEquals(3, clusters.partition(mine, mine.length, enemies, 3));
+        assertEquals(clusters.getBattle(3), clusters.getEnemyBattle(2));
+    }
+
+    /*
+     * One ant of mine, three rows from two enemies side by side: if it stays,
+     * both can step into range and kill it, so it must step away.
+     */
+    private void checkRetreat(int parallelism) {
+        Ants ants = new Ants(0, 0, 20, 20, 0, 0, 5, 0);
+        BattleSearch search = new BattleSearch(ants, parallelism);
+        int[] mine = { ants.index(ants.tileAt(10, 10)) };
+        int[] enemies = { ants.index(ants.tileAt(13, 10)), ants.index(ants.tileAt(13, 11)) };
+        boolean[] fixed = { false };
+        assertEquals(1, search.search(mine, fixed, 1, enemies, 2, System.nanoTime() + SECOND));
+        assertTrue(search.isEngaged(0));
+        assertEquals(Aim.NORTH, search.getDirection(0));
+    }
+
+    @Test
+    public void testRetreat() {
+        checkRetreat(1);
+    }
+
+    @Test
+    public void testParallelRetreat() {
+        checkRetreat(2);
+    }
+
+    /*
+     * Two ants of mine side by side against a lone enemy: together they are
+     * safe wherever it goes, and the ant with orders stays where it is.
+     */
+    @Test
+    public void testFixedAndOutnumbered() {
+        Ants ants = new Ants(0, 0, 20, 20, 0, 0, 5, 0);
+        BattleSearch search = new BattleSearch(ants, 1);
+        int[] mine = { ants.index(ants.tileAt(10, 10)), ants.index(ants.tileAt(10, 11)),
+                ants.index(ants.tileAt(0, 0)) };
+        int[] enemies = { ants.index(ants.tileAt(13, 10)) };
+        boolean[] fixed = { true, false, false };
+        assertEquals(1, search.search(mine, fixed, 3, enemies, 1, System.nanoTime() + SECOND));
+        assertTrue(search.isEngaged(0));
+        assertNull(search.getDirection(0));
+        assertFalse(search.isEngaged(2));
+
+        // Whatever it picked, no reply of the enemy kills an ant of mine.
+        CombatSimulator combat = new CombatSimulator(20, 20, 5);
+        int[] moved = { mine[0], mine[1] };
+        Aim step = search.getDirection(1);
+        if (step != null) {
+            moved[1] = ants.index(ants.getTile(ants.tileAt(10, 11), step));
+        }
+        int[] neighbors = ants.getNeighbors();
+        int[] reply = new int[1];
+        for (int aim = -1; aim < 4; aim++) {
+            reply[0] = aim < 0 ? enemies[0] : neighbors[enemies[0] * 4 + aim];
+            combat.fight(moved, 2, reply, 1);
+            assertEquals(0, combat.getMyDead());
+        }
+    }
+}
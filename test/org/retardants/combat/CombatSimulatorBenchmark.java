@@ -0,0 +1,47 @@
+package org.retardants.combat;
+
+import java.util.Random;
+
+/**
+ * Times the battle rules on random 8 on 8 battles. Not a JUnit test: run it
+ * by hand with
+ *
+ * <pre>
+ * java org.retardants.combat.CombatSimulatorBenchmark [battles] [runs]
+ * </pre>
+ */
+public class CombatSimulatorBenchmark {
+
+    private static final int ROWS = 60;
+    private static final int COLS = 20;
+
+    private static int at(int row, int col) {
+        return row * COLS + col;
+    }
+
+    public static void main(String[] args) {
+        int battles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        CombatSimulator combat = new CombatSimulator(ROWS, COLS, 5);
+        Random r = new Random(17);
+        int[][] mine = new int[battles][8];
+        int[][] theirs = new int[battles][8];
+        for (int b = 0; b < battles; b++) {
+            for (int i = 0; i < 8; i++) {
+                mine[b][i] = at(r.nextInt(6), r.nextInt(6));
+                theirs[b][i] = at(3 + r.nextInt(6), 3 + r.nextInt(6));
+            }
+        }
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            for (int b = 0; b < battles; b++) {
+                combat.fight(mine[b], 8, theirs[b], 8);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println("Resolved " + battles + " 8 on 8 battles in " + best / 1000
+                + "us, best of " + runs);
+    }
+}
@@ -0,0 +1,64 @@
+package org.retardants.combat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the battle rules of the game.
+ */
+public class CombatSimulatorTest {
+
+    private static final int COLS = 20;
+
+    private static int at(int row, int col) {
+        return row * COLS + col;
+    }
+
+    @Test
+    public void testOneOnOne() {
+        CombatSimulator combat = new CombatSimulator(20, COLS, 5);
+        /* In range (distance2 5): both die */
+        assertEquals(2, combat.fight(new int[] { at(5, 5) }, 1, new int[] { at(6, 7) }, 1));
+        assertEquals(1, combat.getMyDead());
+        assertEquals(1, combat.getEnemyDead());
+        /* Out of range (distance2 8) */
+        assertEquals(0, combat.fight(new int[] { at(5, 5) }, 1, new int[] { at(7, 7) }, 1));
+    }
+
+    @Test
+    public void testFocus() {
+        CombatSimulator combat = new CombatSimulator(20, COLS, 5);
+        /* Two of mine against one: only the lone enemy dies */
+        combat.fight(new int[] { at(5, 5), at(5, 7) }, 2, new int[] { at(6, 6) }, 1);
+        assertEquals(0, combat.getMyDead());
+        assertEquals(1, combat.getEnemyDead());
+        assertEquals(1, combat.getFocus(0));
+        assertEquals(2, combat.getFocus(2));
+
+        /*
+         * A line of three against a line of three, one row apart: the middle
+         * ants see three enemies and the ends two, so everyone dies.
+         */
+        combat.fight(new int[] { at(5, 4), at(5, 5), at(5, 6) }, 3,
+                new int[] { at(6, 4), at(6, 5), at(6, 6) }, 3);
+        assertEquals(3, combat.getMyDead());
+        assertEquals(3, combat.getEnemyDead());
+    }
+
+    @Test
+    public void testCollisionsAndOwners() {
+        CombatSimulator combat = new CombatSimulator(20, COLS, 5);
+        /* Two of mine on one location die, and do not fight */
+        combat.fight(new int[] { at(5, 5), at(5, 5) }, 2, new int[] { at(5, 7) }, 1);
+        assertEquals(2, combat.getMyDead());
+        assertEquals(0, combat.getEnemyDead());
+
+        /* Three owners: each ant sees two enemies, and all die */
+        int[] cells = { at(0, 0), at(0, 1), at(1, 0) };
+        int[] owners = { 0, 1, 2 };
+        assertEquals(3, combat.resolve(cells, owners, 3));
+
+        /* The map wraps around */
+        assertEquals(2, combat.fight(new int[] { at(0, 0) }, 1, new int[] { at(19, 19) }, 1));
+    }
+}
@@ -0,0 +1,79 @@
+package org.retardants.combat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/**
+ * Tests of the threat map against the definition, as enemies come and go.
+ */
+public class ThreatMapTest {
+
+    /*
+     * The number of enemies within attackRadius2 of cell after at most one
+     * step, straight from the definition.
+     */
+    private static int threat(int rows, int cols, int attackRadius2, int[] enemies, int count,
+            int cell) {
+        int[][] moves = { { 0, 0 }, { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+        int threat = 0;
+        for (int i = 0; i < count; i++) {
+            for (int[] move : moves) {
+                int dr = Math.abs(enemies[i] / cols + move[0] - cell / cols) % rows;
+                int dc = Math.abs(enemies[i] % cols + move[1] - cell % cols) % cols;
+                dr = Math.min(dr, rows - dr);
+                dc = Math.min(dc, cols - dc);
+                if (dr * dr + dc * dc <= attackRadius2) {
+                    threat++;
+                    break;
+                }
+            }
+        }
+        return threat;
+    }
+
+    @Test
+    public void testAgainstDefinition() {
+        int rows = 17;
+        int cols = 19;
+        ThreatMap threats = new ThreatMap(rows, cols, 5);
+        Random r = new Random(19);
+        int[] enemies = new int[12];
+        for (int turn = 0; turn < 20; turn++) {
+            int count = r.nextInt(enemies.length);
+            for (int i = 0; i < count; i++) {
+                if (turn == 0 || r.nextInt(3) == 0) {
+                    enemies[i] = r.nextInt(rows * cols);
+                }
+            }
+            /* Drop duplicates, as no two enemies share a location */
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                boolean seen = false;
+                for (int j = 0; j < distinct; j++) {
+                    seen |= enemies[j] == enemies[i];
+                }
+                if (!seen) {
+                    enemies[distinct++] = enemies[i];
+                }
+            }
+            threats.update(enemies, distinct);
+            for (int cell = 0; cell < rows * cols; cell++) {
+                assertEquals(threat(rows, cols, 5, enemies, distinct, cell), threats.getThreat(cell));
+            }
+        }
+    }
+
+    @Test
+    public void testReach() {
+        ThreatMap threats = new ThreatMap(20, 20, 5);
+        threats.update(new int[] { 10 * 20 + 10 }, 1);
+        /* Attack range 5 reaches (2, 1) away; one step more reaches (3, 1) and (2, 2) */
+        assertTrue(threats.isThreatened(13 * 20 + 11));
+        assertTrue(threats.isThreatened(12 * 20 + 12));
+        assertFalse(threats.isThreatened(13 * 20 + 12));
+        assertFalse(threats.isThreatened(14 * 20 + 10));
+        assertEquals(37, threats.getStencilSize());
+    }
+}
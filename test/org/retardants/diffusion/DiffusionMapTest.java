@@ -4,6 +4,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
 import org.retardants.adt.Tile;
 
 import java.util.Arrays;
@@ -32,7 +33,7 @@ public class DiffusionMapTest {
         int cols = 5;
         Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
         Set<Tile> candies = new HashSet<Tile>(Arrays.asList(new Tile(2, 2)));
-        DiffusionMap map = new DiffusionMap(cols, rows, testAnts, 10, 0.5);
+        DiffusionMap map = new DiffusionMap(cols, rows, testAnts, 0.5, 10);
         map.timeStep(1, candies);
 
 
@@ -62,7 +63,7 @@ public class DiffusionMapTest {
         int numIters = 100;
         Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
         Set<Tile> candies = new HashSet<Tile>();
-        DiffusionMap map = new DiffusionMap(cols, rows, testAnts, 10, 0.5);
+        DiffusionMap map = new DiffusionMap(cols, rows, testAnts, 0.5, 10);
         Random r = new Random();
 
         /* Add 100 candies */
@@ -80,4 +81,214 @@ public class DiffusionMapTest {
         assertTrue("Performance time of " + deltaTime, deltaTime < 500);
 
     }
+
+    @Test
+    public void testConvergence() {
+        int rows = 20;
+        int cols = 20;
+        Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        testAnts.update(Ilk.MY_ANT, testAnts.tileAt(0, 0));
+        testAnts.update(Ilk.FOOD, testAnts.tileAt(10, 10));
+        DiffusionMap map = new DiffusionMap(cols, rows, testAnts);
+
+        map.timeStep(100000, testAnts.getFoodTiles());
+        assertTrue(map.isConverged());
+        assertTrue(map.getIterations() < 100000);
+        assertTrue(map.getResidual() <= map.getTolerance());
+
+        /* A tighter tolerance needs more steps to be met */
+        int iterations = map.getIterations();
+        DiffusionMap tight = new DiffusionMap(cols, rows, testAnts);
+        tight.setTolerance(map.getTolerance() / 100);
+        tight.timeStep(100000, testAnts.getFoodTiles());
+        assertTrue(tight.isConverged());
+        assertTrue(tight.getIterations() > iterations);
+
+        /* Running out of steps is reported as not converged */
+        DiffusionMap unfinished = new DiffusionMap(cols, rows, testAnts);
+        unfinished.timeStep(3, testAnts.getFoodTiles());
+        assertEquals(3, unfinished.getIterations());
+        assertFalse(unfinished.isConverged());
+    }
+
+    @Test
+    public void testIncremental() {
+        int rows = 60;
+        int cols = 60;
+        Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        for (int i = 0; i < rows; i += 6) {
+            for (int j = 0; j < cols; j += 6) {
+                testAnts.update(Ilk.MY_ANT, testAnts.tileAt(i, j));
+            }
+        }
+        testAnts.update(Ilk.FOOD, testAnts.tileAt(20, 20));
+        Set<Tile> candies = new HashSet<Tile>(testAnts.getFoodTiles());
+        DiffusionMap map = new DiffusionMap(cols, rows, testAnts);
+        map.setIncremental(true);
+
+        /* The first call has nothing to start from and sweeps everything */
+        map.timeStep(1000, candies);
+        assertEquals(rows * cols, map.getActiveCells());
+        assertTrue(map.getResidual() <= map.getTolerance());
+
+        /* Nothing changed: no cell needs diffusing */
+        map.timeStep(1000, candies);
+        assertEquals(0, map.getActiveCells());
+
+        /* A new candy only wakes up its surroundings */
+        Tile candy = testAnts.tileAt(40, 40);
+        testAnts.update(Ilk.FOOD, candy);
+        candies.add(candy);
+        double before = map.getValue(testAnts.tileAt(41, 40));
+        map.timeStep(1000, candies);
+        assertTrue(map.getActiveCells() < rows * cols / 4);
+        assertTrue(map.getIterations() < 1000);
+        assertTrue(map.getResidual() <= map.getTolerance());
+        assertTrue(map.getValue(testAnts.tileAt(41, 40)) > before + 10);
+    }
+
+    @Test
+    public void testIncrementalResumes() {
+        int rows = 60;
+        int cols = 60;
+        Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        testAnts.update(Ilk.MY_ANT, testAnts.tileAt(0, 0));
+        testAnts.update(Ilk.FOOD, testAnts.tileAt(20, 20));
+        Set<Tile> candies = new HashSet<Tile>(testAnts.getFoodTiles());
+        DiffusionMap map = new DiffusionMap(cols, rows, testAnts);
+        map.setIncremental(true);
+
+        /* A first call cut short is carried on by the next, though nothing changed */
+        map.timeStep(5, candies);
+        double residual = map.getResidual();
+        assertTrue(residual > map.getTolerance());
+        map.timeStep(5, candies);
+        assertEquals(rows * cols, map.getActiveCells());
+        assertEquals(5, map.getIterations());
+        assertTrue(map.getResidual() < residual);
+        map.timeStep(100000, candies);
+        assertTrue(map.isConverged());
+        map.timeStep(100000, candies);
+        assertEquals(0, map.getActiveCells());
+
+        /* Likewise for a call cut short over a few cells */
+        Tile candy = testAnts.tileAt(40, 40);
+        testAnts.update(Ilk.FOOD, candy);
+        candies.add(candy);
+        map.timeStep(2, candies);
+        int activeCells = map.getActiveCells();
+        residual = map.getResidual();
+        assertTrue(activeCells > 0 && activeCells < rows * cols);
+        assertTrue(residual > map.getTolerance());
+        map.timeStep(2, candies);
+        assertEquals(activeCells, map.getActiveCells());
+        assertTrue(map.getResidual() < residual);
+    }
+
+    @Test
+    public void testCoarseToFine() {
+        /*
+            A 128x128 map with a wall across row 60, open only at column 100,
+            and a single food at (0, 0).
+         */
+        int rows = 128;
+        int cols = 128;
+        Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        for (int j = 0; j < cols; j++) {
+            if (j != 100)
+                testAnts.update(Ilk.WATER, testAnts.tileAt(60, j));
+        }
+        testAnts.update(Ilk.FOOD, testAnts.tileAt(0, 0));
+        Tile far = testAnts.tileAt(40, 40);
+
+        DiffusionMap jacobi = new DiffusionMap(cols, rows, testAnts);
+        jacobi.timeStep(20, testAnts.getFoodTiles());
+        DiffusionMap multigrid = new DiffusionMap(cols, rows, testAnts);
+        multigrid.setSolver(DiffusionMap.Solver.COARSE_TO_FINE);
+        multigrid.timeStep(20, testAnts.getFoodTiles());
+
+        /* Twenty fine steps alone cannot carry scent 80 cells away */
+        assertEquals(0, jacobi.getValue(far), 0.0);
+        assertTrue(multigrid.getValue(far) > 1);
+
+        /* Water still blocks scent at every level */
+        for (int j = 0; j < cols; j++) {
+            if (j != 100)
+                assertEquals(0, multigrid.getValue(testAnts.tileAt(60, j)), 0.0);
+        }
+        assertEquals(100, multigrid.getValue(testAnts.tileAt(0, 0)), 0.01);
+
+        /* Out of time, the coarse levels leave the fine grid alone */
+        DiffusionMap late = new DiffusionMap(cols, rows, testAnts);
+        late.setSolver(DiffusionMap.Solver.COARSE_TO_FINE);
+        late.timeStep(20, testAnts.getFoodTiles(), -1);
+        assertEquals(0, late.getIterations());
+        assertEquals(0, late.getValue(far), 0.0);
+    }
+
+    @Test
+    public void testParallel() {
+        int rows = 100;
+        int cols = 80;
+        Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        Random r = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            testAnts.update(i % 2 == 0 ? Ilk.WATER : Ilk.FOOD,
+                    testAnts.tileAt(r.nextInt(rows), r.nextInt(cols)));
+        }
+        DiffusionMap sequential = new DiffusionMap(cols, rows, testAnts);
+        sequential.timeStep(50, testAnts.getFoodTiles());
+        DiffusionMap parallel = new DiffusionMap(cols, rows, testAnts);
+        parallel.setParallelism(4);
+        assertEquals(4, parallel.getParallelism());
+        parallel.timeStep(50, testAnts.getFoodTiles());
+
+        /* Every cell is computed from the same inputs, whichever thread runs it */
+        assertEquals(sequential.getResidual(), parallel.getResidual(), 0.0);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                Tile tile = testAnts.tileAt(i, j);
+                assertEquals(sequential.getValue(tile), parallel.getValue(tile), 0.0);
+            }
+        }
+        parallel.setParallelism(1);
+        assertEquals(1, parallel.getParallelism());
+    }
+
+    @Test
+    public void testChannels() {
+        /*
+            A corridor along row 0 of a 3x20 map, with water elsewhere, an ant
+            at (0, 5) and the sources of both channels at (0, 0).
+         */
+        int rows = 3;
+        int cols = 20;
+        Ants testAnts = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        for (int i = 1; i < rows; i++) {
+            for (int j = 0; j < cols; j++)
+                testAnts.update(Ilk.WATER, testAnts.tileAt(i, j));
+        }
+        testAnts.update(Ilk.WATER, testAnts.tileAt(0, cols - 1));
+        testAnts.update(Ilk.MY_ANT, testAnts.tileAt(0, 5));
+        testAnts.update(Ilk.FOOD, testAnts.tileAt(0, 0));
+        DiffusionMap map = new DiffusionMap(cols, rows, testAnts,
+                new DiffusionMap.Channel("food", 100, 0.0, 0.25, true),
+                new DiffusionMap.Channel("hill", 50, 0.01, 0.25, false));
+        int hill = map.getChannel("hill");
+        assertEquals(2, map.getChannelCount());
+        assertEquals(DiffusionMap.FOOD, map.getChannel("food"));
+        assertEquals(-1, map.getChannel("unexplored"));
+
+        map.setSources(hill, testAnts.getFoodTiles());
+        map.timeStep(1000, testAnts.getFoodTiles());
+        Tile behind = testAnts.tileAt(0, 8);
+
+        /* The ant hides the food, but not the hill, from the tiles behind it */
+        assertEquals(0, map.getValue(behind), 0.0);
+        assertEquals(0, map.getValue(testAnts.tileAt(0, 5), DiffusionMap.FOOD), 0.0);
+        assertTrue(map.getValue(behind, hill) > 0);
+        assertTrue(map.getValue(testAnts.tileAt(0, 7), hill) > map.getValue(behind, hill));
+        assertEquals(50, map.getValue(testAnts.tileAt(0, 0), hill), 0.0);
+        assertEquals(0, map.getValue(testAnts.tileAt(1, 8), hill), 0.0);
+    }
 }
@@ -0,0 +1,60 @@
+package org.retardants.food;
+
+import java.util.Random;
+
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+
+/**
+ * Times the matching of 300 ants to 100 food on a crowded 100x100 map. Not a
+ * JUnit test: run it by hand with
+ *
+ * <pre>
+ * java org.retardants.food.FoodAssignmentBenchmark [runs]
+ * </pre>
+ */
+public class FoodAssignmentBenchmark {
+
+    private static final int ANTS = 300;
+    private static final int FOOD = 100;
+
+    /*
+     * A map with random water and distinct random ant and food locations.
+     */
+    private static int[][] randomMap(Ants ants, Random r) {
+        int size = ants.getRows() * ants.getCols();
+        for (int k = 0; k < size / 5; k++) {
+            ants.update(Ilk.WATER, ants.tileAt(r.nextInt(size)));
+        }
+        boolean[] taken = new boolean[size];
+        int[][] cells = { new int[ANTS], new int[FOOD] };
+        for (int[] list : cells) {
+            for (int i = 0; i < list.length; i++) {
+                int cell;
+                do {
+                    cell = r.nextInt(size);
+                } while (taken[cell] || !ants.isPassable(cell));
+                taken[cell] = true;
+                list[i] = cell;
+            }
+        }
+        return cells;
+    }
+
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        Ants ants = new Ants(0, 0, 100, 100, 0, 0, 0, 0);
+        int[][] cells = randomMap(ants, new Random(13));
+        FoodAssignment assignment = new FoodAssignment(ants, 30);
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            assignment.assign(cells[0], ANTS, cells[1], FOOD, Long.MAX_VALUE);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println("Assigned " + ANTS + " ants to " + FOOD + " food in " + best / 1000
+                + "us, best of " + runs + (assignment.isOptimal() ? "" : " (not optimal)"));
+    }
+}
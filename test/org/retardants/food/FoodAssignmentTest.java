@@ -0,0 +1,129 @@
+package org.retardants.food;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+import org.retardants.path.DistanceField;
+
+/**
+ * Tests of the matching of ants to food against exhaustive search.
+ */
+public class FoodAssignmentTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /*
+     * A map with random water and distinct random ant and food locations.
+     */
+    private static int[][] randomMap(Ants ants, Random r, int antCount, int foodCount) {
+        int size = ants.getRows() * ants.getCols();
+        for (int k = 0; k < size / 5; k++) {
+            ants.update(Ilk.WATER, ants.tileAt(r.nextInt(size)));
+        }
+        boolean[] taken = new boolean[size];
+        int[][] cells = { new int[antCount], new int[foodCount] };
+        for (int[] list : cells) {
+            for (int i = 0; i < list.length; i++) {
+                int cell;
+                do {
+                    cell = r.nextInt(size);
+                } while (taken[cell] || !ants.isPassable(cell));
+                taken[cell] = true;
+                list[i] = cell;
+            }
+        }
+        return cells;
+    }
+
+    /*
+     * Best (most food matched, then fewest steps) over every injection of
+     * food into ants, as matched * BIG - steps.
+     */
+    private static int best(int[][] distance, int f, boolean[] usedAnts, int maxDistance) {
+        if (f == distance.length) {
+            return 0;
+        }
+        int best = best(distance, f + 1, usedAnts, maxDistance);
+        for (int a = 0; a < usedAnts.length; a++) {
+            if (!usedAnts[a] && distance[f][a] <= maxDistance) {
+                usedAnts[a] = true;
+                best = Math.max(best, 1000 - distance[f][a]
+                        + best(distance, f + 1, usedAnts, maxDistance));
+                usedAnts[a] = false;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testOptimal() {
+        Random r = new Random(11);
+        for (int run = 0; run < 30; run++) {
+            Ants ants = new Ants(0, 0, 12, 12, 0, 0, 0, 0);
+            int antCount = 1 + r.nextInt(6);
+            int foodCount = 1 + r.nextInt(6);
+            int maxDistance = 4 + r.nextInt(8);
+            int[][] cells = randomMap(ants, r, antCount, foodCount);
+
+            int[][] distance = new int[foodCount][antCount];
+            DistanceField field = new DistanceField(ants);
+            for (int f = 0; f < foodCount; f++) {
+                field.compute(new int[] { cells[1][f] }, 1, Integer.MAX_VALUE);
+                for (int a = 0; a < antCount; a++) {
+                    distance[f][a] = field.getDistance(cells[0][a]);
+                }
+            }
+
+            FoodAssignment assignment = new FoodAssignment(ants, maxDistance);
+            int matched = assignment.assign(cells[0], antCount, cells[1], foodCount, NO_DEADLINE);
+            assertTrue(assignment.isOptimal());
+
+            int score = 0;
+            int count = 0;
+            for (int a = 0; a < antCount; a++) {
+                int f = assignment.getFood(a);
+                if (f >= 0) {
+                    assertEquals(a, assignment.getAnt(f));
+                    assertEquals(distance[f][a], assignment.getDistance(a));
+                    score += 1000 - distance[f][a];
+                    count++;
+                    /* The first step leads one step closer */
+                    Aim step = assignment.getDirection(a);
+                    int next = ants.neighbor(cells[0][a], step);
+                    field.compute(new int[] { cells[1][f] }, 1, Integer.MAX_VALUE);
+                    assertEquals(distance[f][a] - 1, field.getDistance(next));
+                }
+            }
+            assertEquals(matched, count);
+            assertEquals(best(distance, 0, new boolean[antCount], maxDistance), score);
+        }
+    }
+
+    @Test
+    public void testOutOfTime() {
+        Random r = new Random(12);
+        Ants ants = new Ants(0, 0, 30, 30, 0, 0, 0, 0);
+        int[][] cells = randomMap(ants, r, 40, 20);
+        FoodAssignment assignment = new FoodAssignment(ants, 20);
+        int matched = assignment.assign(cells[0], 40, cells[1], 20, 0);
+        assertFalse(assignment.isOptimal());
+
+        /* Greedy, but still one ant per food and one food per ant */
+        int count = 0;
+        for (int a = 0; a < 40; a++) {
+            int f = assignment.getFood(a);
+            if (f >= 0) {
+                assertEquals(a, assignment.getAnt(f));
+                assertTrue(assignment.getDistance(a) <= 20);
+                count++;
+            }
+        }
+        assertEquals(matched, count);
+        assertTrue(matched > 0);
+    }
+}
@@ -0,0 +1,64 @@
+package org.retardants.food;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+
+/**
+ * Tests of claiming ants by a search grown from all food at once.
+ */
+public class FoodClaimsTest {
+
+    @Test
+    public void testNearestFreeAnt() {
+        /*
+            . . . . . . . . . .
+            . F a . . b . F . .
+            . . . . . . . . . .
+            . . . . W W W . . .
+            . . . . . c . . . .
+         */
+        Ants ants = new Ants(0, 0, 5, 10, 0, 0, 0, 0);
+        ants.update(Ilk.WATER, ants.tileAt(3, 4));
+        ants.update(Ilk.WATER, ants.tileAt(3, 5));
+        ants.update(Ilk.WATER, ants.tileAt(3, 6));
+        int[] antCells = { ants.index(1, 2), ants.index(1, 5), ants.index(4, 5) };
+        int[] foodCells = { ants.index(1, 1), ants.index(1, 7) };
+
+        FoodClaims claims = new FoodClaims(ants, 10);
+        assertEquals(2, claims.claim(antCells, 3, foodCells, 2));
+        assertEquals(0, claims.getFood(0));
+        assertEquals(1, claims.getFood(1));
+        assertEquals(-1, claims.getFood(2));
+        assertEquals(1, claims.getAnt(1));
+        assertEquals(1, claims.getDistance(0));
+        assertEquals(2, claims.getDistance(1));
+        assertEquals(Aim.WEST, claims.getDirection(0));
+        assertEquals(Aim.EAST, claims.getDirection(1));
+    }
+
+    @Test
+    public void testOneAntPerFood() {
+        /* Two food close to a single ant, a second ant far away */
+        Ants ants = new Ants(0, 0, 3, 20, 0, 0, 0, 0);
+        int[] antCells = { ants.index(1, 5), ants.index(1, 15) };
+        int[] foodCells = { ants.index(1, 3), ants.index(1, 8) };
+
+        FoodClaims claims = new FoodClaims(ants, 20);
+        assertEquals(2, claims.claim(antCells, 2, foodCells, 2));
+        assertEquals(0, claims.getFood(0));
+        assertEquals(1, claims.getFood(1));
+        assertEquals(7, claims.getDistance(1));
+        assertEquals(Aim.WEST, claims.getDirection(1));
+
+        /* Out of reach, nothing is claimed; stamps keep searches apart */
+        claims = new FoodClaims(ants, 1);
+        assertEquals(0, claims.claim(antCells, 2, foodCells, 2));
+        assertEquals(1, claims.claim(new int[] { ants.index(1, 4) }, 1, foodCells, 2));
+        assertEquals(0, claims.getFood(0));
+        assertEquals(-1, claims.getAnt(1));
+    }
+}
@@ -0,0 +1,58 @@
+package org.retardants.path;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+import org.retardants.adt.Tile;
+
+import java.util.Arrays;
+
+/**
+ * Tests of the breadth-first distance field.
+ */
+public class DistanceFieldTest {
+    @Test
+    public void testWrapsAround() {
+        Ants ants = new Ants(0, 0, 5, 8, 0, 0, 0, 0);
+        DistanceField field = new DistanceField(ants);
+        field.compute(Arrays.asList(ants.tileAt(0, 0)), Integer.MAX_VALUE);
+
+        assertEquals(0, field.getDistance(ants.tileAt(0, 0)));
+        assertEquals(1, field.getDistance(ants.tileAt(4, 0)));
+        assertEquals(1, field.getDistance(ants.tileAt(0, 7)));
+        assertEquals(2 + 4, field.getDistance(ants.tileAt(2, 4)));
+        assertEquals(Aim.SOUTH, field.getDirection(ants.tileAt(4, 0)));
+        assertNull(field.getDirection(ants.tileAt(0, 0)));
+    }
+
+    @Test
+    public void testWaterAndMultipleSources() {
+        /*
+            S . W . S
+            . . W . .
+            . . . . .
+         */
+        Ants ants = new Ants(0, 0, 3, 5, 0, 0, 0, 0);
+        ants.update(Ilk.WATER, ants.tileAt(0, 2));
+        ants.update(Ilk.WATER, ants.tileAt(1, 2));
+        Tile left = ants.tileAt(0, 0);
+        Tile right = ants.tileAt(0, 4);
+        DistanceField field = new DistanceField(ants);
+        field.compute(Arrays.asList(left, right), Integer.MAX_VALUE);
+
+        assertFalse(field.isReached(ants.tileAt(0, 2)));
+        assertEquals(DistanceField.UNREACHED, field.getDistance(ants.tileAt(1, 2)));
+        assertEquals(left, field.getSource(ants.tileAt(1, 1)));
+        assertEquals(right, field.getSource(ants.tileAt(1, 3)));
+        assertEquals(ants.tileAt(0, 1), field.getParent(ants.tileAt(1, 1)));
+
+        // A later, bounded search must not see stale entries.
+        field.compute(Arrays.asList(left), 1);
+        assertTrue(field.isReached(ants.tileAt(0, 1)));
+        assertFalse(field.isReached(ants.tileAt(1, 1)));
+        assertEquals(1, field.getDistance(right)); // around the edge
+    }
+}
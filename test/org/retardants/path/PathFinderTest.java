@@ -0,0 +1,175 @@
+package org.retardants.path;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.retardants.adt.Aim;
+import org.retardants.adt.Ants;
+import org.retardants.adt.Ilk;
+import org.retardants.adt.Tile;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Tests of the generic shortest path search.
+ */
+public class PathFinderTest {
+
+    private final WeightedNode a = new WeightedNode("a", 1);
+    private final WeightedNode b = new WeightedNode("b", 5);
+    private final WeightedNode c = new WeightedNode("c", 1);
+    private final WeightedNode d = new WeightedNode("d", 1);
+    private final WeightedNode e = new WeightedNode("e", 1);
+
+    /*
+        a -> b -> d
+        a -> c -> d
+        e (isolated)
+     */
+    private Graph<WeightedNode> diamond() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        for (WeightedNode node : Arrays.asList(a, b, c, d, e)) {
+            graph.addNode(node);
+        }
+        graph.addEdge(a, b);
+        graph.addEdge(b, d);
+        graph.addEdge(a, c);
+        graph.addEdge(c, d);
+        return graph;
+    }
+
+    @Test
+    public void testCheapestPath() {
+        PathFinder<WeightedNode, WeightedNodePath> finder =
+            new PathFinder<WeightedNode, WeightedNodePath>();
+        WeightedNodePath path = finder.findPath(diamond(),
+                Collections.singleton(new WeightedNodePath(a)), Collections.singleton(d));
+
+        Iterator<WeightedNode> iter = path.iterator();
+        assertEquals(a, iter.next());
+        assertEquals(c, iter.next());
+        assertEquals(d, iter.next());
+        assertFalse(iter.hasNext());
+        assertEquals(3, path.cost(), 0.0);
+    }
+
+    @Test
+    public void testCompiledGraph() {
+        Graph<WeightedNode> graph = diamond();
+        CompactGraph<WeightedNode> compact = graph.compile();
+        assertSame(compact, graph.compile());
+        assertEquals(5, compact.size());
+
+        int id = compact.id(a);
+        Set<WeightedNode> children = new HashSet<WeightedNode>();
+        for (int k = compact.childStart(id); k < compact.childEnd(id); k++) {
+            children.add(compact.node(compact.child(k)));
+        }
+        assertEquals(graph.listChildren(a), children);
+        assertEquals(-1, compact.id(new WeightedNode("f", 1)));
+
+        graph.addEdge(d, e);
+        assertNotSame(compact, graph.compile());
+    }
+
+    @Test
+    public void testReusedFinder() {
+        PathFinder<WeightedNode, WeightedNodePath> finder =
+            new PathFinder<WeightedNode, WeightedNodePath>();
+        Graph<WeightedNode> graph = diamond();
+        try {
+            finder.findPath(graph, Collections.singleton(new WeightedNodePath(a)),
+                    Collections.singleton(e));
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        // Nothing of the failed search leaks into the next ones.
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3, finder.findPath(graph, Collections.singleton(new WeightedNodePath(a)),
+                    Collections.singleton(d)).cost(), 0.0);
+            assertEquals(6, finder.findPath(graph, Collections.singleton(new WeightedNodePath(b)),
+                    Collections.singleton(d)).cost(), 0.0);
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNoPath() {
+        new PathFinder<WeightedNode, WeightedNodePath>().findPath(diamond(),
+                Collections.singleton(new WeightedNodePath(a)), Collections.singleton(e));
+    }
+
+    @Test
+    public void testPathToEachGoal() {
+        PathFinder<WeightedNode, NodeCountingPath> finder =
+            new PathFinder<WeightedNode, NodeCountingPath>();
+        Set<NodeCountingPath> paths = finder.pathPaths(diamond(), new NodeCountingPath(a),
+                new HashSet<WeightedNode>(Arrays.asList(b, d, e)));
+
+        assertEquals(2, paths.size());
+        assertTrue(paths.contains(new NodeCountingPath(a).extend(b)));
+        for (NodeCountingPath path : paths) {
+            assertEquals(path.end() == b ? 2 : 3, path.cost(), 0.0);
+        }
+    }
+
+    @Test
+    public void testGuidedSearchMatchesBreadthFirst() {
+        /*
+            A 12x12 map with a wall across column 6, open only at row 11.
+         */
+        int rows = 12;
+        int cols = 12;
+        Ants ants = new Ants(0, 0, rows, cols, 0, 0, 0, 0);
+        for (int row = 0; row < rows - 1; row++) {
+            ants.update(Ilk.WATER, ants.tileAt(row, 6));
+            ants.update(Ilk.WATER, ants.tileAt(row, 0));
+        }
+        Graph<Tile> graph = new Graph<Tile>();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                graph.addNode(ants.tileAt(row, col));
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                Tile tile = ants.tileAt(row, col);
+                for (Aim aim : Aim.values()) {
+                    if (ants.getIlk(tile, aim).isPassable()) {
+                        graph.addEdge(tile, ants.getTile(tile, aim));
+                    }
+                }
+            }
+        }
+
+        Tile start = ants.tileAt(2, 3);
+        Tile goal = ants.tileAt(2, 9);
+        PathFinder<Tile, TilePath> finder =
+            new PathFinder<Tile, TilePath>(new ManhattanHeuristic(rows, cols));
+        TilePath path = finder.findPath(graph, Collections.singleton(new TilePath(start)),
+                Collections.singleton(goal));
+
+        DistanceField field = new DistanceField(ants);
+        field.compute(Collections.singleton(start), Integer.MAX_VALUE);
+        assertEquals(field.getDistance(goal) + 1, path.cost(), 0.0);
+        assertEquals(start, path.start());
+        assertEquals(goal, path.end());
+    }
+
+    @Test
+    public void testLongPathsCompareQuickly() {
+        NodeCountingPath first = new NodeCountingPath(a);
+        NodeCountingPath second = new NodeCountingPath(a);
+        for (int i = 0; i < 100000; i++) {
+            first = first.extend(i % 2 == 0 ? b : c);
+            second = second.extend(i % 2 == 0 ? b : c);
+        }
+        assertEquals(first.hashCode(), second.hashCode());
+        assertTrue(first.equals(second));
+        assertFalse(first.equals(second.extend(d)));
+    }
+}